@@ -6,7 +6,10 @@ import org.apache.logging.log4j.Logger;
 import com.abaan404.boatrace.game.qualifying.Qualifying;
 import com.abaan404.boatrace.game.race.Race;
 import com.abaan404.boatrace.game.timetrial.TimeTrial;
+import com.abaan404.boatrace.gameplay.PlayerRegistry;
+import com.abaan404.boatrace.gameplay.SpawnLogic;
 import com.abaan404.boatrace.gameplay.Teams;
+import com.abaan404.boatrace.gameplay.TrackPreloader;
 import com.abaan404.boatrace.leaderboard.Leaderboard;
 
 import eu.pb4.polymer.resourcepack.api.PolymerResourcePackUtils;
@@ -44,24 +47,26 @@ public class BoatRace implements ModInitializer {
 
             return context.openWithWorld(worldConfig, (game, world) -> {
                 Teams teams = new Teams(config.team(), TeamManager.addTo(game));
+                PlayerRegistry players = new PlayerRegistry();
                 BoatRaceConfig.Qualifying qualifying = config.qualifying().orElseThrow();
                 BoatRaceConfig.Race race = config.race().orElseThrow();
 
-                Qualifying.open(game, qualifying, race, world, track, teams);
+                Qualifying.open(game, qualifying, race, config.actionBar(), world, track, teams, players);
             });
         }
 
         if (config.race().isPresent()) {
             return context.openWithWorld(worldConfig, (game, world) -> {
                 Teams teams = new Teams(config.team(), TeamManager.addTo(game));
+                PlayerRegistry players = new PlayerRegistry();
                 BoatRaceConfig.Race race = config.race().orElseThrow();
 
-                Race.open(game, race, world, track, teams, ObjectArrayList.of());
+                Race.open(game, race, config.actionBar(), world, track, teams, players, ObjectArrayList.of());
             });
         }
 
         return context.openWithWorld(worldConfig, (game, world) -> {
-            TimeTrial.open(game, world, track);
+            TimeTrial.open(game, world, track, new PlayerRegistry(), config.actionBar());
         });
     }
 
@@ -71,5 +76,8 @@ public class BoatRace implements ModInitializer {
         BoatRaceItems.initialize();
         BoatRaceCommands.initialize();
         Leaderboard.initialize();
+        BoatRaceTrack.initialize();
+        TrackPreloader.initialize();
+        SpawnLogic.initialize();
     }
 }
@@ -14,11 +14,13 @@ import xyz.nucleoid.plasmid.api.game.common.team.GameTeam;
 public record BoatRaceConfig(
         Identifier track,
         Team team,
+        ActionBar actionBar,
         Optional<Qualifying> qualifying, Optional<Race> race) {
 
     public static final MapCodec<BoatRaceConfig> CODEC = RecordCodecBuilder.mapCodec(instance -> instance.group(
             Identifier.CODEC.fieldOf("track").forGetter(BoatRaceConfig::track),
             Team.CODEC.optionalFieldOf("team", Team.DEFAULT).forGetter(BoatRaceConfig::team),
+            ActionBar.CODEC.optionalFieldOf("action_bar", ActionBar.DEFAULT).forGetter(BoatRaceConfig::actionBar),
             Qualifying.CODEC.optionalFieldOf("qualifying").forGetter(BoatRaceConfig::qualifying),
             Race.CODEC.optionalFieldOf("race").forGetter(BoatRaceConfig::race))
             .apply(instance, BoatRaceConfig::new));
@@ -84,6 +86,20 @@ public record BoatRaceConfig(
         }
     }
 
+    /**
+     * How often the action bar timer is refreshed. Position and checkpoint
+     * changes are always shown right away.
+     *
+     * @param interval The ticks between refreshes.
+     */
+    public record ActionBar(int interval) {
+        public static final ActionBar DEFAULT = new ActionBar(1);
+
+        public static final Codec<ActionBar> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+                Codec.intRange(1, 20).optionalFieldOf("interval", DEFAULT.interval()).forGetter(ActionBar::interval))
+                .apply(instance, ActionBar::new));
+    }
+
     public record Countdown(long duration, long random) {
         public static final Countdown DEFAULT = new Countdown(1000, 0);
 
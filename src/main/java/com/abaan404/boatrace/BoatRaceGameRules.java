@@ -1,8 +1,40 @@
 package com.abaan404.boatrace;
 
+import xyz.nucleoid.plasmid.api.game.GameActivity;
+import xyz.nucleoid.plasmid.api.game.event.GameActivityEvents;
 import xyz.nucleoid.plasmid.api.game.rule.GameRuleType;
 
 public class BoatRaceGameRules {
     public static GameRuleType SINGLE_SEAT = GameRuleType.create();
     public static GameRuleType MODIFY_INVENTORIES = GameRuleType.create();
+
+    private static int revision = 0;
+
+    /**
+     * Invalidate cached rule lookups whenever this activity is enabled or
+     * disabled.
+     *
+     * @param game The game activity setting these rules.
+     */
+    public static void addTo(GameActivity game) {
+        game.listen(GameActivityEvents.ENABLE, BoatRaceGameRules::invalidate);
+        game.listen(GameActivityEvents.DISABLE, BoatRaceGameRules::invalidate);
+    }
+
+    /**
+     * Get a counter that changes whenever the rules of any game may have changed.
+     * Rule lookups cached against an older revision must be tested again.
+     *
+     * @return The revision.
+     */
+    public static int getRevision() {
+        return BoatRaceGameRules.revision;
+    }
+
+    /**
+     * Invalidate every cached rule lookup.
+     */
+    public static void invalidate() {
+        BoatRaceGameRules.revision++;
+    }
 }
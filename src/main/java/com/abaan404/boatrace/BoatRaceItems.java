@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.function.Function;
 
 import com.abaan404.boatrace.game.race.RaceWidgets;
+import com.abaan404.boatrace.gameplay.GhostPlayback;
 
 import eu.pb4.polymer.core.api.item.PolymerItemGroupUtils;
 import eu.pb4.polymer.core.api.item.SimplePolymerItem;
@@ -45,12 +46,21 @@ public class BoatRaceItems {
                             List.of(RaceWidgets.LeaderboardType.PLAYER.toString()),
                             List.of())));
 
+    public static final SimplePolymerItem CYCLE_GHOST = register("cycle_ghost", SimplePolymerItem::new,
+            new SimplePolymerItem.Settings()
+                    .component(DataComponentTypes.CUSTOM_MODEL_DATA, new CustomModelDataComponent(
+                            List.of(),
+                            List.of(),
+                            List.of(GhostPlayback.Mode.PERSONAL_BEST.toString()),
+                            List.of())));
+
     public static void initialize() {
         Registry.register(Registries.ITEM_GROUP, ITEM_GROUP_KEY, ITEM_GROUP);
         ItemGroupEvents.modifyEntriesEvent(ITEM_GROUP_KEY).register(itemGroup -> {
             itemGroup.add(RESET);
             itemGroup.add(RESPAWN);
             itemGroup.add(CYCLE_LEADERBOARD);
+            itemGroup.add(CYCLE_GHOST);
         });
     }
 
@@ -1,6 +1,8 @@
 package com.abaan404.boatrace;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -12,11 +14,22 @@ import com.mojang.serialization.Codec;
 import com.mojang.serialization.MapCodec;
 import com.mojang.serialization.codecs.RecordCodecBuilder;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.text.Text;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.StringIdentifiable;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.gen.chunk.ChunkGenerator;
 import xyz.nucleoid.map_templates.BlockBounds;
@@ -33,11 +46,18 @@ public class BoatRaceTrack {
     private final Regions regions;
     private final Meta meta;
     private final Attributes attributes;
+    private final RegionIndex regionIndex;
+    private final Map<RespawnRegion, Vec3d> spawnPoints = new Object2ObjectOpenHashMap<>();
+    private final long[] footprint;
 
     private final MapTemplate template;
 
     private static final int CURRENT_TRACK_FORMAT = 2;
 
+    // a lobby usually rotates through a handful of tracks
+    private static final int CACHE_SIZE = 8;
+    private static final Object2ObjectLinkedOpenHashMap<Identifier, BoatRaceTrack> CACHE = new Object2ObjectLinkedOpenHashMap<>();
+
     private BoatRaceTrack(MapTemplate template) {
         this.template = template;
 
@@ -95,16 +115,83 @@ public class BoatRaceTrack {
                 spawn,
                 gridBoxes,
                 pitLane);
+
+        this.regionIndex = new RegionIndex(this.regions);
+
+        // resolve every spawn point up front, respawns are then just a teleport
+        for (Set<RespawnRegion> checkpoint : checkpoints) {
+            for (RespawnRegion region : checkpoint) {
+                this.spawnPoints.put(region, this.resolveSpawnPoint(region));
+            }
+        }
+
+        for (RespawnRegion region : gridBoxes) {
+            this.spawnPoints.put(region, this.resolveSpawnPoint(region));
+        }
+
+        pitLane.ifPresent(region -> this.spawnPoints.put(region, this.resolveSpawnPoint(region)));
+        this.spawnPoints.put(spawn, this.resolveSpawnPoint(spawn));
+
+        this.footprint = this.resolveFootprint();
+    }
+
+    public static void initialize() {
+        ServerLifecycleEvents.END_DATA_PACK_RELOAD.register((server, resourceManager, success) -> {
+            if (success) {
+                BoatRaceTrack.invalidate();
+            }
+        });
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> BoatRaceTrack.invalidate());
     }
 
     /**
-     * Represents a track loaded from a resource.
+     * Represents a track loaded from a resource. Tracks are immutable once loaded
+     * and shared between games, so recently used ones are kept until the data
+     * packs are reloaded.
      *
      * @param server     The server to load from.
      * @param identifier The resource id of the track
      * @return A loaded track.
      */
     public static BoatRaceTrack load(MinecraftServer server, Identifier identifier) {
+        synchronized (CACHE) {
+            BoatRaceTrack track = CACHE.getAndMoveToLast(identifier);
+            if (track != null) {
+                return track;
+            }
+        }
+
+        BoatRaceTrack track = BoatRaceTrack.read(server, identifier);
+
+        synchronized (CACHE) {
+            CACHE.putAndMoveToLast(identifier, track);
+
+            while (CACHE.size() > CACHE_SIZE) {
+                CACHE.removeFirst();
+            }
+        }
+
+        return track;
+    }
+
+    /**
+     * Forget every loaded track, the next load reads them from their resource
+     * again.
+     */
+    public static void invalidate() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    /**
+     * Read and parse a track from its resource.
+     *
+     * @param server     The server to load from.
+     * @param identifier The resource id of the track
+     * @return A loaded track.
+     */
+    private static BoatRaceTrack read(MinecraftServer server, Identifier identifier) {
         MapTemplate template;
 
         try {
@@ -153,6 +240,147 @@ public class BoatRaceTrack {
         return attributes;
     }
 
+    /**
+     * A spatial index over this track's checkpoint, pit lane and spawn regions.
+     *
+     * @return The region index.
+     */
+    public RegionIndex getRegionIndex() {
+        return this.regionIndex;
+    }
+
+    /**
+     * Get where a player spawns in a region, on the first solid block below its
+     * center. Resolved from the template so the world is never touched.
+     *
+     * @param region The region.
+     * @return The spawn point.
+     */
+    public Vec3d getSpawnPoint(RespawnRegion region) {
+        Vec3d spawnPoint = this.spawnPoints.get(region);
+
+        // not one of this track's regions, tracks are shared so it isn't cached
+        if (spawnPoint == null) {
+            spawnPoint = this.resolveSpawnPoint(region);
+        }
+
+        return spawnPoint;
+    }
+
+    /**
+     * Get every spawn point resolved for this track's regions.
+     *
+     * @return The spawn points.
+     */
+    public Collection<Vec3d> getSpawnPoints() {
+        return Collections.unmodifiableCollection(this.spawnPoints.values());
+    }
+
+    /**
+     * Get every chunk the track covers, its regions and the route between its
+     * checkpoints.
+     *
+     * @return The chunks as packed chunk positions, ordered along the track.
+     */
+    public long[] getFootprint() {
+        return this.footprint.clone();
+    }
+
+    /**
+     * Collect the chunks under every region and along straight lines between
+     * consecutive checkpoints, with a chunk of margin either side.
+     *
+     * @return The chunks as packed chunk positions.
+     */
+    private long[] resolveFootprint() {
+        LongLinkedOpenHashSet chunks = new LongLinkedOpenHashSet();
+
+        // start where players spawn so the grid is loaded first
+        BoatRaceTrack.addChunks(chunks, this.regions.spawn().bounds());
+        for (RespawnRegion gridBox : this.regions.gridBoxes()) {
+            BoatRaceTrack.addChunks(chunks, gridBox.bounds());
+        }
+
+        List<Set<RespawnRegion>> checkpoints = this.regions.checkpoints();
+        int segments = switch (this.attributes.layout()) {
+            case CIRCULAR -> checkpoints.size();
+            case LINEAR -> checkpoints.size() - 1;
+        };
+
+        for (int i = 0; i < checkpoints.size(); i++) {
+            for (RespawnRegion from : checkpoints.get(i)) {
+                BoatRaceTrack.addChunks(chunks, from.bounds());
+
+                if (i >= segments) {
+                    continue;
+                }
+
+                for (RespawnRegion to : checkpoints.get((i + 1) % checkpoints.size())) {
+                    Vec3d start = from.bounds().center();
+                    Vec3d end = to.bounds().center();
+
+                    // step half a chunk at a time so no chunk along the line is skipped
+                    int steps = MathHelper.ceil(start.distanceTo(end) / 8.0);
+                    for (int step = 0; step <= steps; step++) {
+                        Vec3d pos = start.lerp(end, steps == 0 ? 0.0 : (double) step / steps);
+                        int chunkX = MathHelper.floor(pos.getX()) >> 4;
+                        int chunkZ = MathHelper.floor(pos.getZ()) >> 4;
+
+                        for (int x = chunkX - 1; x <= chunkX + 1; x++) {
+                            for (int z = chunkZ - 1; z <= chunkZ + 1; z++) {
+                                chunks.add(ChunkPos.toLong(x, z));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        this.regions.pitLane().ifPresent(pitLane -> BoatRaceTrack.addChunks(chunks, pitLane.bounds()));
+
+        return chunks.toLongArray();
+    }
+
+    /**
+     * Add every chunk a region's bounds touch.
+     *
+     * @param chunks The chunks to add to.
+     * @param bounds The bounds.
+     */
+    private static void addChunks(LongLinkedOpenHashSet chunks, BlockBounds bounds) {
+        for (int x = bounds.min().getX() >> 4; x <= bounds.max().getX() >> 4; x++) {
+            for (int z = bounds.min().getZ() >> 4; z <= bounds.max().getZ() >> 4; z++) {
+                chunks.add(ChunkPos.toLong(x, z));
+            }
+        }
+    }
+
+    /**
+     * Find a solid ground from the center of a region.
+     *
+     * @param region The region.
+     * @return The spawn point.
+     */
+    private Vec3d resolveSpawnPoint(RespawnRegion region) {
+        BlockPos center = BlockPos.ofFloored(region.bounds().center());
+        BlockPos spawn = center;
+
+        boolean solidBlockFound = false;
+        while (spawn.getY() >= region.bounds().min().getY()) {
+            if (!this.template.getBlockState(spawn.down()).isAir()) {
+                solidBlockFound = true;
+                break;
+            }
+            spawn = spawn.down();
+        }
+
+        if (!solidBlockFound) {
+            spawn = center;
+        }
+
+        return spawn.toBottomCenterPos();
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -178,10 +406,22 @@ public class BoatRaceTrack {
         return true;
     }
 
-    public record RespawnRegion(BlockBounds bounds, float yaw, float pitch) {
+    /**
+     * A region to respawn at. The bounds are also kept as primitive min and max
+     * coordinates for allocation free intersection tests.
+     */
+    public record RespawnRegion(BlockBounds bounds, float yaw, float pitch,
+            double minX, double minY, double minZ,
+            double maxX, double maxY, double maxZ) {
 
         public static RespawnRegion DEFAULT = new RespawnRegion(BlockBounds.ofBlock(BlockPos.ORIGIN), 0.0f, 0.0f);
 
+        public RespawnRegion(BlockBounds bounds, float yaw, float pitch) {
+            this(bounds, yaw, pitch,
+                    bounds.min().getX(), bounds.min().getY(), bounds.min().getZ(),
+                    bounds.max().getX() + 1.0, bounds.max().getY() + 1.0, bounds.max().getZ() + 1.0);
+        }
+
         private static RespawnRegion of(TemplateRegion templateRegion) {
             return new RespawnRegion(
                     templateRegion.getBounds(),
@@ -197,7 +437,62 @@ public class BoatRaceTrack {
          * @return If they intersected.
          */
         public boolean intersect(Vec3d pos, Vec3d lastPos) {
-            return this.bounds().asBox().intersects(pos, lastPos);
+            return this.intersect(lastPos.getX(), lastPos.getY(), lastPos.getZ(),
+                    pos.getX(), pos.getY(), pos.getZ()) >= 0.0;
+        }
+
+        /**
+         * Check if a movement intersected the region bounds using a slab test.
+         *
+         * @return The fraction along the movement where it entered the region, 0 if
+         *         it started inside or -1 if it never intersected.
+         */
+        public double intersect(double fromX, double fromY, double fromZ, double toX, double toY, double toZ) {
+            double enter = 0.0;
+            double exit = 1.0;
+
+            double dx = toX - fromX;
+            if (dx == 0.0) {
+                if (fromX <= this.minX || fromX >= this.maxX) {
+                    return -1.0;
+                }
+            } else {
+                double t1 = (this.minX - fromX) / dx;
+                double t2 = (this.maxX - fromX) / dx;
+                enter = Math.max(enter, Math.min(t1, t2));
+                exit = Math.min(exit, Math.max(t1, t2));
+            }
+
+            double dy = toY - fromY;
+            if (dy == 0.0) {
+                if (fromY <= this.minY || fromY >= this.maxY) {
+                    return -1.0;
+                }
+            } else {
+                double t1 = (this.minY - fromY) / dy;
+                double t2 = (this.maxY - fromY) / dy;
+                enter = Math.max(enter, Math.min(t1, t2));
+                exit = Math.min(exit, Math.max(t1, t2));
+            }
+
+            double dz = toZ - fromZ;
+            if (dz == 0.0) {
+                if (fromZ <= this.minZ || fromZ >= this.maxZ) {
+                    return -1.0;
+                }
+            } else {
+                double t1 = (this.minZ - fromZ) / dz;
+                double t2 = (this.maxZ - fromZ) / dz;
+                enter = Math.max(enter, Math.min(t1, t2));
+                exit = Math.min(exit, Math.max(t1, t2));
+            }
+
+            // a movement only grazing the bounds does not count
+            if (enter >= exit) {
+                return -1.0;
+            }
+
+            return enter;
         }
     }
 
@@ -207,6 +502,133 @@ public class BoatRaceTrack {
             Optional<RespawnRegion> pitLane) {
     }
 
+    /**
+     * An immutable uniform grid on the horizontal plane over the track's regions,
+     * used to narrow down which regions a movement could have intersected.
+     */
+    public static final class RegionIndex {
+        /**
+         * Group of the pit lane region.
+         */
+        public static final int PIT_LANE = -1;
+
+        /**
+         * Group of the spawn region.
+         */
+        public static final int SPAWN = -2;
+
+        private static final int CELL_SHIFT = 4;
+
+        private final RespawnRegion[] regions;
+        private final int[] groups;
+        private final Long2ObjectMap<int[]> cells = new Long2ObjectOpenHashMap<>();
+
+        private RegionIndex(Regions regions) {
+            List<RespawnRegion> entries = new ObjectArrayList<>();
+            IntArrayList groups = new IntArrayList();
+
+            // entries are ordered by checkpoint index so queries come out in track order
+            for (int i = 0; i < regions.checkpoints().size(); i++) {
+                for (RespawnRegion region : regions.checkpoints().get(i)) {
+                    entries.add(region);
+                    groups.add(i);
+                }
+            }
+
+            regions.pitLane().ifPresent(pitLane -> {
+                entries.add(pitLane);
+                groups.add(PIT_LANE);
+            });
+
+            entries.add(regions.spawn());
+            groups.add(SPAWN);
+
+            this.regions = entries.toArray(RespawnRegion[]::new);
+            this.groups = groups.toIntArray();
+
+            Long2ObjectMap<IntArrayList> cells = new Long2ObjectOpenHashMap<>();
+            for (int entry = 0; entry < this.regions.length; entry++) {
+                BlockBounds bounds = this.regions[entry].bounds();
+
+                for (int cx = bounds.min().getX() >> CELL_SHIFT; cx <= bounds.max().getX() >> CELL_SHIFT; cx++) {
+                    for (int cz = bounds.min().getZ() >> CELL_SHIFT; cz <= bounds.max().getZ() >> CELL_SHIFT; cz++) {
+                        cells.computeIfAbsent(ChunkPos.toLong(cx, cz), k -> new IntArrayList()).add(entry);
+                    }
+                }
+            }
+
+            for (Long2ObjectMap.Entry<IntArrayList> cell : cells.long2ObjectEntrySet()) {
+                this.cells.put(cell.getLongKey(), cell.getValue().toIntArray());
+            }
+        }
+
+        /**
+         * Collect every entry whose cells are touched by a movement. The result is
+         * sorted and free of duplicates, so checkpoints come out in track order.
+         *
+         * @param fromX The entity's x pos last tick.
+         * @param fromZ The entity's z pos last tick.
+         * @param toX   The entity's current x pos.
+         * @param toZ   The entity's current z pos.
+         * @param out   The list to fill with entries, cleared beforehand.
+         */
+        public void query(double fromX, double fromZ, double toX, double toZ, IntArrayList out) {
+            out.clear();
+
+            int minX = MathHelper.floor(Math.min(fromX, toX)) >> CELL_SHIFT;
+            int maxX = MathHelper.floor(Math.max(fromX, toX)) >> CELL_SHIFT;
+            int minZ = MathHelper.floor(Math.min(fromZ, toZ)) >> CELL_SHIFT;
+            int maxZ = MathHelper.floor(Math.max(fromZ, toZ)) >> CELL_SHIFT;
+
+            for (int cx = minX; cx <= maxX; cx++) {
+                for (int cz = minZ; cz <= maxZ; cz++) {
+                    int[] cell = this.cells.get(ChunkPos.toLong(cx, cz));
+                    if (cell != null) {
+                        out.addElements(out.size(), cell);
+                    }
+                }
+            }
+
+            // a movement only spans more than one cell when crossing a cell border
+            if (minX == maxX && minZ == maxZ) {
+                return;
+            }
+
+            int[] elements = out.elements();
+            IntArrays.quickSort(elements, 0, out.size());
+
+            int size = 0;
+            for (int i = 0; i < out.size(); i++) {
+                if (size == 0 || elements[size - 1] != elements[i]) {
+                    elements[size++] = elements[i];
+                }
+            }
+
+            out.size(size);
+        }
+
+        /**
+         * Get the region for an entry.
+         *
+         * @param entry The entry from a query.
+         * @return The region.
+         */
+        public RespawnRegion getRegion(int entry) {
+            return this.regions[entry];
+        }
+
+        /**
+         * Get the group for an entry, the checkpoint index for checkpoints or
+         * {@link #PIT_LANE} or {@link #SPAWN}.
+         *
+         * @param entry The entry from a query.
+         * @return The group.
+         */
+        public int getGroup(int entry) {
+            return this.groups[entry];
+        }
+    }
+
     public record Attributes(
             int timeOfDay,
             Layout layout) {
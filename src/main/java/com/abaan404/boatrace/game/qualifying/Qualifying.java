@@ -10,7 +10,9 @@ import com.abaan404.boatrace.BoatRacePlayer;
 import com.abaan404.boatrace.BoatRaceTrack;
 import com.abaan404.boatrace.events.PlayerDismountEvent;
 import com.abaan404.boatrace.gameplay.DesyncIndicator;
+import com.abaan404.boatrace.gameplay.PlayerRegistry;
 import com.abaan404.boatrace.gameplay.Teams;
+import com.abaan404.boatrace.gameplay.TrackPreloader;
 import com.mojang.authlib.GameProfile;
 
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
@@ -44,17 +46,22 @@ public class Qualifying {
     private final QualifyingWidgets widgets;
 
     private Qualifying(GameSpace gameSpace, BoatRaceConfig.Qualifying config, BoatRaceConfig.Race configRace,
-            BoatRaceTrack track, Teams teams, ServerWorld world, GlobalWidgets widgets) {
-        this.stageManager = new QualifyingStageManager(gameSpace, config, configRace, world, track, teams);
-        this.widgets = new QualifyingWidgets(gameSpace, world, widgets, track);
+            BoatRaceConfig.ActionBar actionBar, BoatRaceTrack track, Teams teams, PlayerRegistry players,
+            ServerWorld world, GlobalWidgets widgets) {
+        this.stageManager = new QualifyingStageManager(gameSpace, config, configRace, actionBar, world, track, teams,
+                players);
+        this.widgets = new QualifyingWidgets(gameSpace, world, widgets, track, actionBar);
     }
 
     public static void open(GameActivity game, BoatRaceConfig.Qualifying config, BoatRaceConfig.Race configRace,
-            ServerWorld world, BoatRaceTrack track, Teams teams) {
+            BoatRaceConfig.ActionBar actionBar, ServerWorld world, BoatRaceTrack track, Teams teams,
+            PlayerRegistry players) {
         GlobalWidgets widgets = GlobalWidgets.addTo(game);
-        DesyncIndicator.addTo(game, world);
+        DesyncIndicator.addTo(game, world, players);
+        TrackPreloader.addTo(game, world, track);
 
-        Qualifying qualifying = new Qualifying(game.getGameSpace(), config, configRace, track, teams, world, widgets);
+        Qualifying qualifying = new Qualifying(game.getGameSpace(), config, configRace, actionBar, track, teams,
+                players, world, widgets);
 
         world.getGameRules().get(GameRules.DO_DAYLIGHT_CYCLE).set(false, game.getGameSpace().getServer());
         world.setTimeOfDay(track.getAttributes().timeOfDay());
@@ -71,6 +78,7 @@ public class Qualifying {
         game.setRule(GameRuleType.BREAK_BLOCKS, EventResult.DENY);
         game.setRule(BoatRaceGameRules.SINGLE_SEAT, EventResult.ALLOW);
         game.setRule(BoatRaceGameRules.MODIFY_INVENTORIES, EventResult.DENY);
+        BoatRaceGameRules.addTo(game);
 
         game.listen(PlayerDamageEvent.EVENT, (player, source, amount) -> EventResult.DENY);
         game.listen(PlayerDeathEvent.EVENT, qualifying::onPlayerDeath);
@@ -83,6 +91,7 @@ public class Qualifying {
         game.listen(GamePlayerEvents.REMOVE, qualifying::removePlayer);
 
         game.listen(GameActivityEvents.TICK, qualifying::tick);
+        game.listen(GameActivityEvents.DISABLE, qualifying.stageManager::close);
     }
 
     private JoinOfferResult.Accept offerPlayer(JoinOffer offer) {
@@ -133,13 +142,13 @@ public class Qualifying {
 
         // turn them into a participant and spawn them as if they just started
         if (item.getItem().equals(BoatRaceItems.RESET)) {
-            BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
+            int id = this.stageManager.players.getId(player);
 
             this.stageManager.spawnPlayer(player);
             this.stageManager.updatePlayerInventory(player);
-            this.stageManager.checkpoints.restart(bPlayer);
-            this.stageManager.splits.reset(bPlayer);
-            this.stageManager.splits.stop(bPlayer);
+            this.stageManager.checkpoints.restart(id);
+            this.stageManager.splits.reset(id);
+            this.stageManager.splits.stop(id);
 
             return ActionResult.CONSUME;
         }
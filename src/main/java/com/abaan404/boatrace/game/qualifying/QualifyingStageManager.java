@@ -1,14 +1,16 @@
 package com.abaan404.boatrace.game.qualifying;
 
 import java.util.List;
-import java.util.Set;
 
+import com.abaan404.boatrace.BoatRace;
 import com.abaan404.boatrace.BoatRaceConfig;
 import com.abaan404.boatrace.BoatRaceItems;
 import com.abaan404.boatrace.BoatRacePlayer;
 import com.abaan404.boatrace.BoatRaceTrack;
 import com.abaan404.boatrace.game.race.Race;
+import com.abaan404.boatrace.gameplay.BoatPool;
 import com.abaan404.boatrace.gameplay.Checkpoints;
+import com.abaan404.boatrace.gameplay.PlayerRegistry;
 import com.abaan404.boatrace.gameplay.SpawnLogic;
 import com.abaan404.boatrace.gameplay.Splits;
 import com.abaan404.boatrace.gameplay.Teams;
@@ -16,8 +18,9 @@ import com.abaan404.boatrace.leaderboard.Leaderboard;
 import com.abaan404.boatrace.leaderboard.PersonalBest;
 import com.abaan404.boatrace.utils.TextUtils;
 
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
-import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import net.minecraft.block.NoteBlock;
 import net.minecraft.entity.player.PlayerInventory;
 import net.minecraft.network.packet.s2c.play.SubtitleS2CPacket;
@@ -39,30 +42,35 @@ public class QualifyingStageManager {
     private final ServerWorld world;
     private final BoatRaceConfig.Qualifying config;
     private final BoatRaceConfig.Race configRace;
+    private final BoatRaceConfig.ActionBar actionBar;
     private final BoatRaceTrack track;
 
     public final Checkpoints checkpoints;
     public final Splits splits;
     public final Teams teams;
+    public final PlayerRegistry players;
 
     private final SpawnLogic spawnLogic;
-    private final Set<BoatRacePlayer> participants = new ObjectOpenHashSet<>();;
+    private final IntSet participants = new IntOpenHashSet();
 
     private long duration = 0;
 
     public QualifyingStageManager(GameSpace gameSpace, BoatRaceConfig.Qualifying config, BoatRaceConfig.Race configRace,
-            ServerWorld world, BoatRaceTrack track, Teams teams) {
+            BoatRaceConfig.ActionBar actionBar, ServerWorld world, BoatRaceTrack track, Teams teams,
+            PlayerRegistry players) {
         this.gameSpace = gameSpace;
         this.world = world;
         this.config = config;
         this.configRace = configRace;
+        this.actionBar = actionBar;
         this.track = track;
         this.teams = teams;
+        this.players = players;
 
         this.checkpoints = new Checkpoints(track);
-        this.splits = new Splits();
+        this.splits = new Splits(track);
 
-        this.spawnLogic = new SpawnLogic(world);
+        this.spawnLogic = new SpawnLogic(world, track);
     }
 
     /**
@@ -72,11 +80,10 @@ public class QualifyingStageManager {
      * @param player The player.
      */
     public void spawnPlayer(ServerPlayerEntity player) {
-        BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
         BoatRaceTrack.Regions regions = this.track.getRegions();
 
         // spawn spectators at spawn without boats
-        if (!this.participants.contains(bPlayer)) {
+        if (!this.participants.contains(this.players.getId(player))) {
             this.spawnLogic.resetPlayer(player, GameMode.SPECTATOR);
             this.spawnLogic.spawnPlayer(player, regions.spawn());
             return;
@@ -96,7 +103,7 @@ public class QualifyingStageManager {
         PlayerInventory inventory = player.getInventory();
         inventory.clear();
 
-        if (this.participants.contains(BoatRacePlayer.of(player))) {
+        if (this.participants.contains(this.players.getId(player))) {
             inventory.setStack(8, BoatRaceItems.RESET.getDefaultStack());
         }
     }
@@ -118,6 +125,15 @@ public class QualifyingStageManager {
         leaderboard.delete(this.world, this.track, bPlayer);
     }
 
+    /**
+     * Clean up after the game, call once when it ends.
+     */
+    public void close() {
+        BoatPool.Metrics metrics = this.spawnLogic.close();
+        BoatRace.LOGGER.debug("Boat pool created {}, reused {} and discarded {} boats", metrics.created(),
+                metrics.reused(), metrics.discarded());
+    }
+
     /**
      * Tick the player, update leaderboards and splits and also check the
      * duration/lap count of this game.
@@ -136,46 +152,46 @@ public class QualifyingStageManager {
         }
 
         for (ServerPlayerEntity player : this.gameSpace.getPlayers()) {
-            BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
+            int id = this.players.getId(player);
 
-            if (!this.participants.contains(bPlayer)) {
+            if (!this.participants.contains(id)) {
                 continue;
             }
 
-            switch (this.checkpoints.tick(player)) {
+            switch (this.checkpoints.tick(player, id)) {
                 case BEGIN: {
-                    this.splits.run(bPlayer);
-                    this.splits.recordSplit(bPlayer);
+                    this.splits.run(id);
+                    this.splits.recordStart(this.world, id, this.checkpoints.getCrossing());
                     break;
                 }
 
                 case LOOP: {
-                    this.splits.recordSplit(bPlayer);
+                    this.splits.recordSplit(this.world, id, this.checkpoints.getCrossing());
                     this.submit(player);
 
                     this.config.laps().ifPresent(laps -> {
-                        if (this.checkpoints.getLaps(bPlayer) > laps) {
+                        if (this.checkpoints.getLaps(id) > laps) {
                             this.toFinisher(player);
                         }
                     });
 
                     // start a new run
-                    this.splits.reset(bPlayer);
-                    this.splits.recordSplit(bPlayer);
+                    this.splits.reset(id);
+                    this.splits.recordStart(this.world, id, this.checkpoints.getCrossing());
                     break;
                 }
 
                 case FINISH: {
-                    this.splits.recordSplit(bPlayer);
+                    this.splits.recordSplit(this.world, id, this.checkpoints.getCrossing());
                     this.submit(player);
 
                     // stop the timer
-                    this.splits.stop(bPlayer);
+                    this.splits.stop(id);
                     break;
                 }
 
                 case CHECKPOINT: {
-                    this.splits.recordSplit(bPlayer);
+                    this.splits.recordSplit(this.world, id, this.checkpoints.getCrossing());
                     break;
                 }
 
@@ -205,15 +221,15 @@ public class QualifyingStageManager {
      * @param player The player.
      */
     public void toSpectator(BoatRacePlayer player) {
-        if (!this.participants.contains(player)) {
+        int id = this.players.getId(player);
+
+        if (!this.participants.remove(id)) {
             return;
         }
 
-        this.participants.remove(player);
-
-        this.checkpoints.reset(player);
-        this.splits.reset(player);
-        this.splits.stop(player);
+        this.checkpoints.reset(id);
+        this.splits.reset(id);
+        this.splits.stop(id);
     }
 
     /**
@@ -222,15 +238,15 @@ public class QualifyingStageManager {
      * @param player The player.
      */
     public void toParticipant(BoatRacePlayer player) {
-        if (this.participants.contains(player)) {
+        int id = this.players.getId(player);
+
+        if (!this.participants.add(id)) {
             return;
         }
 
-        this.participants.add(player);
-
-        this.checkpoints.reset(player);
-        this.splits.reset(player);
-        this.splits.stop(player);
+        this.checkpoints.reset(id);
+        this.splits.reset(id);
+        this.splits.stop(id);
     }
 
     /**
@@ -240,12 +256,12 @@ public class QualifyingStageManager {
      * @param player The player.
      */
     public void toFinisher(ServerPlayerEntity player) {
-        BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
+        int id = this.players.getId(player);
 
-        this.participants.remove(bPlayer);
+        this.participants.remove(id);
 
-        this.splits.stop(bPlayer);
-        this.splits.reset(bPlayer);
+        this.splits.stop(id);
+        this.splits.reset(id);
         this.spawnLogic.resetPlayer(player, GameMode.SPECTATOR);
         this.spawnLogic.despawnVehicle(player);
     }
@@ -253,11 +269,11 @@ public class QualifyingStageManager {
     /**
      * Check if the player is a participant.
      *
-     * @param player The player.
+     * @param id The player's id.
      * @return If they are on track ready to set a time.
      */
-    public boolean isParticipant(BoatRacePlayer player) {
-        return this.participants.contains(player);
+    public boolean isParticipant(int id) {
+        return this.participants.contains(id);
     }
 
     /**
@@ -291,7 +307,7 @@ public class QualifyingStageManager {
 
         this.gameSpace.setActivity(game -> {
             Teams teams = new Teams(this.teams, TeamManager.addTo(game));
-            Race.open(game, this.configRace, this.world, this.track, teams, records);
+            Race.open(game, this.configRace, this.actionBar, this.world, this.track, teams, this.players, records);
         });
     }
 
@@ -301,15 +317,14 @@ public class QualifyingStageManager {
      * @param player The player to create a new pb for.
      */
     private void submit(ServerPlayerEntity player) {
-        BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
+        int id = this.players.getId(player);
+        BoatRacePlayer bPlayer = this.players.getPlayer(id);
 
         Leaderboard leaderboard = this.world.getAttachedOrCreate(Leaderboard.ATTACHMENT);
 
-        PersonalBest pb = new PersonalBest(bPlayer, this.splits.getSplits(bPlayer));
-        Leaderboard newLeaderboard = leaderboard.trySubmit(this.world, this.track, pb);
-
-        if (newLeaderboard != leaderboard) {
-            int position = newLeaderboard.getLeaderboardPosition(this.track, bPlayer);
+        PersonalBest pb = new PersonalBest(bPlayer, this.splits.getSplits(id));
+        if (leaderboard.trySubmit(this.world, this.track, pb)) {
+            int position = leaderboard.getLeaderboardPosition(this.track, bPlayer);
             GameSpacePlayers players = this.gameSpace.getPlayers();
 
             players.sendMessage(TextUtils.chatNewPersonalBest(pb, position));
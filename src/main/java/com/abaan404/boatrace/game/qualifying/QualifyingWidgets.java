@@ -1,16 +1,17 @@
 package com.abaan404.boatrace.game.qualifying;
 
 import java.util.List;
-import java.util.Map;
 
+import com.abaan404.boatrace.BoatRaceConfig;
 import com.abaan404.boatrace.BoatRacePlayer;
 import com.abaan404.boatrace.BoatRaceTrack;
 import com.abaan404.boatrace.leaderboard.Leaderboard;
 import com.abaan404.boatrace.leaderboard.PersonalBest;
+import com.abaan404.boatrace.utils.ActionBarCache;
 import com.abaan404.boatrace.utils.TextUtils;
 
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
-import net.minecraft.network.packet.s2c.play.OverlayMessageS2CPacket;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.text.MutableText;
@@ -30,13 +31,16 @@ public class QualifyingWidgets {
     private static final int SIDEBAR_RANKING_COMPARED = 2;
     private static final int SIDEBAR_RANKING_TOP = 10;
 
-    private final Map<BoatRacePlayer, SidebarWidget> sidebars = new Object2ObjectOpenHashMap<>();
+    private final Int2ObjectMap<SidebarWidget> sidebars = new Int2ObjectOpenHashMap<>();
+    private final ActionBarCache actionBar;
 
-    public QualifyingWidgets(GameSpace gameSpace, ServerWorld world, GlobalWidgets widgets, BoatRaceTrack track) {
+    public QualifyingWidgets(GameSpace gameSpace, ServerWorld world, GlobalWidgets widgets, BoatRaceTrack track,
+            BoatRaceConfig.ActionBar actionBar) {
         this.gameSpace = gameSpace;
         this.world = world;
         this.track = track;
         this.widgets = widgets;
+        this.actionBar = new ActionBarCache(actionBar);
     }
 
     /**
@@ -73,19 +77,24 @@ public class QualifyingWidgets {
             case LINEAR -> this.track.getRegions().checkpoints().size() - 2;
         };
 
+        this.actionBar.tick();
+
         for (ServerPlayerEntity player : this.gameSpace.getPlayers()) {
-            BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
-            if (!stageManager.isParticipant(bPlayer)) {
+            int id = stageManager.players.getId(player);
+            BoatRacePlayer bPlayer = stageManager.players.getPlayer(id);
+            if (!stageManager.isParticipant(id)) {
                 continue;
             }
 
-            PersonalBest pb = leaderboard.getPersonalBest(this.track, bPlayer);
+            int position = leaderboard.getLeaderboardPosition(this.track, bPlayer);
+            int checkpoint = stageManager.checkpoints.getCheckpointIndex(id);
 
-            List<Long> currentSplits = stageManager.splits.getSplits(bPlayer);
+            if (!this.actionBar.shouldRefresh(id, position, checkpoint)) {
+                continue;
+            }
 
-            long timer = stageManager.splits.getTimer(bPlayer);
-            int position = leaderboard.getLeaderboardPosition(this.track, bPlayer);
-            int checkpoint = stageManager.checkpoints.getCheckpointIndex(bPlayer);
+            PersonalBest pb = leaderboard.getPersonalBest(this.track, bPlayer);
+            long timer = stageManager.splits.getTimer(id);
 
             MutableText actionBarText = Text.empty();
 
@@ -95,7 +104,7 @@ public class QualifyingWidgets {
             }
 
             if (checkpoint > 0 && pb.exists()) {
-                long delta = pb.getCheckpointDelta(currentSplits, checkpoint);
+                long delta = pb.getCheckpointDelta(stageManager.splits.getSplit(id, checkpoint), checkpoint);
                 actionBarText.append(TextUtils.actionBarTimer(timer)).append(" ");
                 actionBarText.append(TextUtils.actionBarDelta(delta)).append(" ");
             } else {
@@ -103,7 +112,7 @@ public class QualifyingWidgets {
             }
 
             actionBarText.append(TextUtils.actionBarCheckpoint(Math.max(0, checkpoint), maxCheckpoints));
-            player.networkHandler.sendPacket(new OverlayMessageS2CPacket(actionBarText));
+            this.actionBar.send(player, id, position, checkpoint, actionBarText);
         }
     }
 
@@ -114,17 +123,18 @@ public class QualifyingWidgets {
         Leaderboard leaderboard = this.world.getAttachedOrCreate(Leaderboard.ATTACHMENT);
 
         for (ServerPlayerEntity player : this.gameSpace.getPlayers()) {
-            BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
+            int id = stageManager.players.getId(player);
+            BoatRacePlayer bPlayer = stageManager.players.getPlayer(id);
 
-            if (!this.sidebars.containsKey(bPlayer)) {
+            if (!this.sidebars.containsKey(id)) {
                 SidebarWidget newSidebar = this.widgets.addSidebar(
                         TextUtils.scoreboardTitleText("Qualifying"),
-                        p -> BoatRacePlayer.of(p).equals(bPlayer));
+                        p -> stageManager.players.getId(p) == id);
                 newSidebar.addPlayer(player);
-                this.sidebars.put(bPlayer, newSidebar);
+                this.sidebars.put(id, newSidebar);
             }
 
-            SidebarWidget sidebar = this.sidebars.get(bPlayer);
+            SidebarWidget sidebar = this.sidebars.get(id);
 
             sidebar.set(content -> {
                 content.add(Text.empty());
@@ -137,7 +147,7 @@ public class QualifyingWidgets {
                     }
 
                     content.add(TextUtils.scoreboardLaps(
-                            stageManager.checkpoints.getLaps(bPlayer),
+                            stageManager.checkpoints.getLaps(id),
                             laps));
                 });
 
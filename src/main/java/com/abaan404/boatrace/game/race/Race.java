@@ -12,7 +12,9 @@ import com.abaan404.boatrace.BoatRaceTrack;
 import com.abaan404.boatrace.events.PlayerDismountEvent;
 import com.abaan404.boatrace.events.PlayerPitSuccess;
 import com.abaan404.boatrace.gameplay.DesyncIndicator;
+import com.abaan404.boatrace.gameplay.PlayerRegistry;
 import com.abaan404.boatrace.gameplay.Teams;
+import com.abaan404.boatrace.gameplay.TrackPreloader;
 import com.mojang.authlib.GameProfile;
 
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
@@ -49,10 +51,11 @@ public class Race {
     private final Set<BoatRacePlayer> qualified;
     private final boolean acceptUnqualified;
 
-    private Race(GameSpace gameSpace, BoatRaceConfig.Race config, BoatRaceTrack track, Teams teams,
-            ServerWorld world, GlobalWidgets widgets, List<BoatRacePlayer> gridOrder) {
-        this.stageManager = new RaceStageManager(gameSpace, config, world, track, teams);
-        this.widgets = new RaceWidgets(gameSpace, widgets, track);
+    private Race(GameSpace gameSpace, BoatRaceConfig.Race config, BoatRaceConfig.ActionBar actionBar,
+            BoatRaceTrack track, Teams teams, PlayerRegistry players, ServerWorld world, GlobalWidgets widgets,
+            List<BoatRacePlayer> gridOrder) {
+        this.stageManager = new RaceStageManager(gameSpace, config, world, track, teams, players);
+        this.widgets = new RaceWidgets(gameSpace, widgets, track, actionBar);
         this.qualified = Set.copyOf(gridOrder);
         this.acceptUnqualified = config.acceptUnqualified() || this.qualified.isEmpty();
 
@@ -83,12 +86,15 @@ public class Race {
         }
     }
 
-    public static void open(GameActivity game, BoatRaceConfig.Race config, ServerWorld world, BoatRaceTrack track,
-            Teams teams, List<BoatRacePlayer> gridOrder) {
+    public static void open(GameActivity game, BoatRaceConfig.Race config, BoatRaceConfig.ActionBar actionBar,
+            ServerWorld world, BoatRaceTrack track, Teams teams, PlayerRegistry players,
+            List<BoatRacePlayer> gridOrder) {
         GlobalWidgets widgets = GlobalWidgets.addTo(game);
-        DesyncIndicator.addTo(game, world);
+        DesyncIndicator.addTo(game, world, players);
+        TrackPreloader.addTo(game, world, track);
 
-        Race race = new Race(game.getGameSpace(), config, track, teams, world, widgets, gridOrder);
+        Race race = new Race(game.getGameSpace(), config, actionBar, track, teams, players, world, widgets,
+                gridOrder);
 
         world.getGameRules().get(GameRules.DO_DAYLIGHT_CYCLE).set(false, game.getGameSpace().getServer());
         world.setTimeOfDay(track.getAttributes().timeOfDay());
@@ -106,6 +112,7 @@ public class Race {
         game.setRule(GameRuleType.DISMOUNT_VEHICLE, EventResult.DENY);
         game.setRule(BoatRaceGameRules.SINGLE_SEAT, EventResult.ALLOW);
         game.setRule(BoatRaceGameRules.MODIFY_INVENTORIES, EventResult.DENY);
+        BoatRaceGameRules.addTo(game);
 
         game.listen(PlayerDamageEvent.EVENT, (player, source, amount) -> EventResult.DENY);
         game.listen(PlayerDeathEvent.EVENT, race::onPlayerDeath);
@@ -119,6 +126,7 @@ public class Race {
         game.listen(GamePlayerEvents.REMOVE, race::removePlayer);
 
         game.listen(GameActivityEvents.TICK, race::onTick);
+        game.listen(GameActivityEvents.DISABLE, race.stageManager::close);
     }
 
     private JoinOfferResult.Accept offerPlayer(JoinOffer offer) {
@@ -126,9 +134,10 @@ public class Race {
 
         for (GameProfile profile : offer.players()) {
             BoatRacePlayer player = BoatRacePlayer.of(profile);
+            int id = this.stageManager.players.getId(player);
 
             // race has begun, spectate only unless a participant already
-            if (!this.stageManager.goCountdown.isCounting() && !this.stageManager.isParticipant(player)) {
+            if (!this.stageManager.goCountdown.isCounting() && !this.stageManager.isParticipant(id)) {
                 this.stageManager.toSpectator(player);
                 this.stageManager.teams.unassign(player);
             }
@@ -197,7 +206,7 @@ public class Race {
 
         // cycle leaderboard type
         else if (stack.getItem().equals(BoatRaceItems.CYCLE_LEADERBOARD)) {
-            RaceWidgets.LeaderboardType nextType = this.widgets.cycleLeaderboard(player);
+            RaceWidgets.LeaderboardType nextType = this.widgets.cycleLeaderboard(this.stageManager, player);
             stack.set(DataComponentTypes.CUSTOM_MODEL_DATA, new CustomModelDataComponent(
                     List.of(),
                     List.of(),
@@ -218,11 +227,13 @@ public class Race {
     }
 
     private EventResult onPitSuccess(ServerPlayerEntity player) {
-        if (!this.stageManager.isParticipant(BoatRacePlayer.of(player))) {
+        int id = this.stageManager.players.getId(player);
+
+        if (!this.stageManager.isParticipant(id)) {
             return EventResult.PASS;
         }
 
-        if (!this.stageManager.pits.finishPit(player)) {
+        if (!this.stageManager.pits.finishPit(id)) {
             return EventResult.DENY;
         }
 
@@ -232,5 +243,6 @@ public class Race {
     private void onTick() {
         this.stageManager.tickPlayers();
         this.widgets.tick(this.stageManager);
+        this.stageManager.packets.flush();
     }
 }
@@ -3,27 +3,32 @@ package com.abaan404.boatrace.game.race;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.SequencedSet;
 import java.util.Set;
 
+import com.abaan404.boatrace.BoatRace;
 import com.abaan404.boatrace.BoatRaceConfig;
 import com.abaan404.boatrace.BoatRaceItems;
 import com.abaan404.boatrace.BoatRacePlayer;
 import com.abaan404.boatrace.BoatRaceTrack;
+import com.abaan404.boatrace.gameplay.BoatPool;
 import com.abaan404.boatrace.gameplay.Checkpoints;
 import com.abaan404.boatrace.gameplay.Countdown;
 import com.abaan404.boatrace.gameplay.PitStops;
+import com.abaan404.boatrace.gameplay.PlayerRegistry;
 import com.abaan404.boatrace.gameplay.Positions;
 import com.abaan404.boatrace.gameplay.SpawnLogic;
 import com.abaan404.boatrace.gameplay.Splits;
 import com.abaan404.boatrace.gameplay.Teams;
 import com.abaan404.boatrace.leaderboard.Leaderboard;
 import com.abaan404.boatrace.leaderboard.PersonalBest;
+import com.abaan404.boatrace.utils.PacketBundler;
 import com.abaan404.boatrace.utils.TextUtils;
 
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntList;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
-import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
 import net.minecraft.block.NoteBlock;
 import net.minecraft.entity.player.PlayerInventory;
 import net.minecraft.network.packet.s2c.play.SubtitleS2CPacket;
@@ -56,31 +61,35 @@ public class RaceStageManager {
     public final Positions positions;
     public final Countdown goCountdown;
     public final Teams teams;
+    public final PlayerRegistry players;
+    public final PacketBundler packets;
 
     private final SpawnLogic spawnLogic;
-    private final SequencedSet<BoatRacePlayer> participants = new ObjectLinkedOpenHashSet<>();
+    private final IntLinkedOpenHashSet participants = new IntLinkedOpenHashSet();
 
     private PersonalBest fastestLap = PersonalBest.DEFAULT;
     private long duration = 0;
     private long lastCountdown = Long.MAX_VALUE;
 
     public RaceStageManager(GameSpace gameSpace, BoatRaceConfig.Race config, ServerWorld world, BoatRaceTrack track,
-            Teams teams) {
+            Teams teams, PlayerRegistry players) {
         this.gameSpace = gameSpace;
         this.world = world;
         this.config = config;
         this.track = track;
         this.teams = teams;
+        this.players = players;
 
         this.pits = new PitStops();
         this.checkpoints = new Checkpoints(track);
-        this.splits = new Splits();
-        this.positions = new Positions();
+        this.splits = new Splits(track);
+        this.positions = new Positions(track);
+        this.packets = new PacketBundler();
 
         this.goCountdown = new Countdown();
         this.goCountdown.setCountdown(config.goCountdown());
 
-        this.spawnLogic = new SpawnLogic(world);
+        this.spawnLogic = new SpawnLogic(world, track);
     }
 
     /**
@@ -90,11 +99,11 @@ public class RaceStageManager {
      * @param player The player.
      */
     public void spawnPlayer(ServerPlayerEntity player) {
-        BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
+        int id = this.players.getId(player);
         BoatRaceTrack.Regions regions = this.track.getRegions();
 
         // spawn spectators or non qualified at spawn without boats
-        if (!this.participants.contains(bPlayer)) {
+        if (!this.participants.contains(id)) {
             this.spawnLogic.resetPlayer(player, GameMode.SPECTATOR);
             this.spawnLogic.spawnPlayer(player, regions.spawn());
             return;
@@ -103,12 +112,16 @@ public class RaceStageManager {
         this.spawnLogic.resetPlayer(player, GameMode.ADVENTURE);
 
         BoatRaceTrack.RespawnRegion respawn = this.checkpoints
-                .getCheckpoint(bPlayer)
+                .getCheckpoint(id)
                 .orElseGet(() -> {
-                    List<BoatRacePlayer> list = new ObjectArrayList<>(this.participants);
-                    int idx = list.indexOf(bPlayer);
+                    int idx = 0;
+                    for (IntIterator it = this.participants.iterator(); it.hasNext(); idx++) {
+                        if (it.nextInt() == id) {
+                            break;
+                        }
+                    }
 
-                    if (idx >= 0 && idx < regions.gridBoxes().size()) {
+                    if (idx < regions.gridBoxes().size()) {
                         return regions.gridBoxes().get(idx);
                     }
 
@@ -147,7 +160,7 @@ public class RaceStageManager {
         PlayerInventory inventory = player.getInventory();
         inventory.clear();
 
-        if (this.participants.contains(BoatRacePlayer.of(player))) {
+        if (this.participants.contains(this.players.getId(player))) {
             inventory.setStack(8, BoatRaceItems.CYCLE_LEADERBOARD.getDefaultStack());
 
             if (!this.config.noRespawn()) {
@@ -163,36 +176,50 @@ public class RaceStageManager {
      */
     public void despawnPlayer(ServerPlayerEntity player) {
         this.spawnLogic.despawnVehicle(player);
+        this.packets.discard(player);
+    }
+
+    /**
+     * Clean up after the game, call once when it ends.
+     */
+    public void close() {
+        BoatPool.Metrics metrics = this.spawnLogic.close();
+        BoatRace.LOGGER.debug("Boat pool created {}, reused {} and discarded {} boats", metrics.created(),
+                metrics.reused(), metrics.discarded());
     }
 
     /**
      * Tick the game.
      */
     public void tickPlayers() {
+        this.spawnLogic.tick();
+
         // check if countdown is ready
         switch (this.goCountdown.tick(this.world)) {
             case FINISH: {
                 for (ServerPlayerEntity player : this.gameSpace.getPlayers()) {
-                    if (!this.participants.contains(BoatRacePlayer.of(player))) {
+                    if (!this.participants.contains(this.players.getId(player))) {
                         continue;
                     }
 
                     this.spawnLogic.unfreezeVehicle(player);
-                    player.playSoundToPlayer(SoundEvents.BLOCK_NOTE_BLOCK_PLING.value(), SoundCategory.UI, 1.0f,
-                            NoteBlock.getNotePitch(24));
+                    this.packets.playSound(player, SoundEvents.BLOCK_NOTE_BLOCK_PLING.value(), SoundCategory.UI,
+                            1.0f, NoteBlock.getNotePitch(24));
                 }
 
                 // start positions timer for non server players
-                for (BoatRacePlayer bPlayer : this.participants) {
-                    this.positions.run(bPlayer);
+                for (IntIterator it = this.participants.iterator(); it.hasNext();) {
+                    this.positions.run(it.nextInt());
                 }
                 break;
             }
 
             case COUNTDOWN: {
                 if (this.lastCountdown / 1000 != this.goCountdown.getCountdown() / 1000) {
-                    this.gameSpace.getPlayers().playSound(SoundEvents.BLOCK_NOTE_BLOCK_PLING.value(), SoundCategory.UI,
-                            1.0f, NoteBlock.getNotePitch(12));
+                    for (ServerPlayerEntity player : this.gameSpace.getPlayers()) {
+                        this.packets.playSound(player, SoundEvents.BLOCK_NOTE_BLOCK_PLING.value(), SoundCategory.UI,
+                                1.0f, NoteBlock.getNotePitch(12));
+                    }
                 }
 
                 this.lastCountdown = this.goCountdown.getCountdown();
@@ -205,8 +232,8 @@ public class RaceStageManager {
         }
 
         boolean allDisconnected = true;
-        for (BoatRacePlayer player : this.participants) {
-            allDisconnected &= !player.ref().isOnline(this.gameSpace);
+        for (IntIterator it = this.participants.iterator(); it.hasNext();) {
+            allDisconnected &= !this.players.getPlayer(it.nextInt()).ref().isOnline(this.gameSpace);
         }
 
         // max time reached or every player finished their laps or every participant has
@@ -216,28 +243,28 @@ public class RaceStageManager {
         }
 
         for (ServerPlayerEntity player : this.gameSpace.getPlayers()) {
-            BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
+            int id = this.players.getId(player);
 
-            if (!this.participants.contains(bPlayer)) {
+            if (!this.participants.contains(id)) {
                 continue;
             }
 
-            switch (this.checkpoints.tick(player)) {
+            switch (this.checkpoints.tick(player, id)) {
                 case BEGIN: {
-                    this.splits.run(bPlayer);
-                    this.splits.recordSplit(bPlayer);
-                    this.positions.update(bPlayer);
+                    this.splits.run(id);
+                    this.splits.recordStart(this.world, id, this.checkpoints.getCrossing());
+                    this.positions.update(this.world, id, this.checkpoints.getCrossing());
                     break;
                 }
 
                 case LOOP: {
-                    this.positions.update(bPlayer);
-                    this.splits.recordSplit(bPlayer);
+                    this.positions.update(this.world, id, this.checkpoints.getCrossing());
+                    this.splits.recordSplit(this.world, id, this.checkpoints.getCrossing());
                     this.submit(player);
 
                     // start a new lap time
-                    this.splits.reset(bPlayer);
-                    this.splits.recordSplit(bPlayer);
+                    this.splits.reset(id);
+                    this.splits.recordStart(this.world, id, this.checkpoints.getCrossing());
 
                     if (this.getLeadingLaps() > this.getMaxLaps()) {
                         this.toFinisher(player);
@@ -252,27 +279,27 @@ public class RaceStageManager {
 
                 case MISSED: {
                     Pair<Text, Text> titles = TextUtils.titleAlertCheckpoint();
-                    player.networkHandler.sendPacket(new TitleFadeS2CPacket(0, 30, 20));
-                    player.networkHandler.sendPacket(new SubtitleS2CPacket(titles.getRight()));
-                    player.networkHandler.sendPacket(new TitleS2CPacket(titles.getLeft()));
+                    this.packets.send(player, new TitleFadeS2CPacket(0, 30, 20));
+                    this.packets.send(player, new SubtitleS2CPacket(titles.getRight()));
+                    this.packets.send(player, new TitleS2CPacket(titles.getLeft()));
                     break;
                 }
 
                 case CHECKPOINT: {
-                    this.splits.recordSplit(bPlayer);
-                    this.positions.update(bPlayer);
+                    this.splits.recordSplit(this.world, id, this.checkpoints.getCrossing());
+                    this.positions.update(this.world, id, this.checkpoints.getCrossing());
                     break;
                 }
 
                 case PIT_ENTER: {
-                    if (this.pits.getPits(bPlayer) < this.getRequiredPits()) {
-                        this.pits.startPit(player);
+                    if (this.pits.getPits(id) < this.getRequiredPits()) {
+                        this.pits.startPit(player, id);
                     }
                     break;
                 }
 
                 case PIT_EXIT: {
-                    this.pits.stopPit(player);
+                    this.pits.stopPit(id);
                     break;
                 }
 
@@ -293,17 +320,17 @@ public class RaceStageManager {
      * @param player The player.
      */
     public void toSpectator(BoatRacePlayer player) {
-        if (!this.participants.contains(player)) {
+        int id = this.players.getId(player);
+
+        if (!this.participants.remove(id)) {
             return;
         }
 
-        this.participants.remove(player);
-
-        this.pits.reset(player);
-        this.checkpoints.reset(player);
-        this.splits.reset(player);
-        this.splits.stop(player);
-        this.positions.remove(player);
+        this.pits.reset(id);
+        this.checkpoints.reset(id);
+        this.splits.reset(id);
+        this.splits.stop(id);
+        this.positions.remove(id);
     }
 
     /**
@@ -312,17 +339,17 @@ public class RaceStageManager {
      * @param player The player.
      */
     public void toParticipant(BoatRacePlayer player) {
-        if (this.participants.contains(player)) {
+        int id = this.players.getId(player);
+
+        if (!this.participants.add(id)) {
             return;
         }
 
-        this.participants.add(player);
-
-        this.pits.reset(player);
-        this.checkpoints.reset(player);
-        this.splits.reset(player);
-        this.splits.stop(player);
-        this.positions.add(player);
+        this.pits.reset(id);
+        this.checkpoints.reset(id);
+        this.splits.reset(id);
+        this.splits.stop(id);
+        this.positions.add(id);
     }
 
     /**
@@ -332,12 +359,11 @@ public class RaceStageManager {
      * @param player The player.
      */
     public void toFinisher(ServerPlayerEntity player) {
-        BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
+        int id = this.players.getId(player);
 
-        if (this.positions.getPosition(bPlayer) == 0) {
+        if (this.positions.getPosition(id) == 0) {
             for (ServerPlayerEntity player2 : this.gameSpace.getPlayers()) {
-                BoatRacePlayer bPlayer2 = BoatRacePlayer.of(player2);
-                if (this.checkpoints.getLaps(bPlayer2) >= this.config.maxLaps()) {
+                if (this.checkpoints.getLaps(this.players.getId(player2)) >= this.config.maxLaps()) {
                     continue;
                 }
 
@@ -345,9 +371,9 @@ public class RaceStageManager {
             }
         }
 
-        this.participants.remove(bPlayer);
-        this.splits.stop(bPlayer);
-        this.positions.stop(bPlayer);
+        this.participants.remove(id);
+        this.splits.stop(id);
+        this.positions.stop(id);
         this.spawnLogic.resetPlayer(player, GameMode.SPECTATOR);
         this.spawnLogic.despawnVehicle(player);
     }
@@ -355,11 +381,11 @@ public class RaceStageManager {
     /**
      * Check if the player is a participant.
      *
-     * @param player The player.
+     * @param id The player's id.
      * @return If they are on track ready to set a time.
      */
-    public boolean isParticipant(BoatRacePlayer player) {
-        return this.participants.contains(player);
+    public boolean isParticipant(int id) {
+        return this.participants.contains(id);
     }
 
     /**
@@ -372,13 +398,13 @@ public class RaceStageManager {
     }
 
     public int getLeadingLaps() {
-        List<BoatRacePlayer> positions = this.positions.getPositions();
+        IntList positions = this.positions.getPositions();
 
         if (positions.isEmpty()) {
             return -1;
         }
 
-        return this.checkpoints.getLaps(positions.getFirst());
+        return this.checkpoints.getLaps(positions.getInt(0));
     }
 
     /**
@@ -422,15 +448,15 @@ public class RaceStageManager {
      * @param player The player to create a new pb for.
      */
     private void submit(ServerPlayerEntity player) {
-        BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
-        PersonalBest pb = new PersonalBest(bPlayer, this.splits.getSplits(bPlayer));
+        int id = this.players.getId(player);
+        PersonalBest pb = new PersonalBest(this.players.getPlayer(id), this.splits.getSplits(id));
 
         if (Leaderboard.validate(this.track, pb) && pb.timer() < this.fastestLap.timer()) {
             this.fastestLap = pb;
             GameSpacePlayers players = this.gameSpace.getPlayers();
 
             players.sendMessage(TextUtils.chatNewFastestLap(pb));
-            player.playSoundToPlayer(SoundEvents.BLOCK_NOTE_BLOCK_CHIME.value(), SoundCategory.UI, 1.0f,
+            this.packets.playSound(player, SoundEvents.BLOCK_NOTE_BLOCK_CHIME.value(), SoundCategory.UI, 1.0f,
                     NoteBlock.getNotePitch(18));
         } else {
             player.sendMessage(TextUtils.chatNewTime(pb.timer()));
@@ -443,17 +469,21 @@ public class RaceStageManager {
      */
     private void endGame() {
         GameSpacePlayers players = this.gameSpace.getPlayers();
-        List<BoatRacePlayer> positions = this.positions.getPositions();
+        List<BoatRacePlayer> positions = new ObjectArrayList<>();
 
         List<BoatRacePlayer> qualified = new ObjectArrayList<>();
         List<BoatRacePlayer> dsq = new ObjectArrayList<>();
         List<BoatRacePlayer> dnf = new ObjectArrayList<>();
 
-        for (BoatRacePlayer player : positions) {
-            if (this.participants.contains(player)) {
+        for (int i = 0; i < this.positions.getPositions().size(); i++) {
+            int id = this.positions.getPositions().getInt(i);
+            BoatRacePlayer player = this.players.getPlayer(id);
+            positions.add(player);
+
+            if (this.participants.contains(id)) {
                 // did not finish the race
                 dnf.add(player);
-            } else if (this.pits.getPits(player) < this.getRequiredPits()) {
+            } else if (this.pits.getPits(id) < this.getRequiredPits()) {
                 // did not complete required pits
                 dsq.add(player);
             } else {
@@ -485,7 +515,8 @@ public class RaceStageManager {
             BoatRacePlayer player = qualified.get(i);
             GameTeamKey team = this.teams.getTeamFor(player);
 
-            int laps = this.checkpoints.getLaps(player);
+            int id = this.players.getId(player);
+            int laps = this.checkpoints.getLaps(id);
             int points = i < this.config.scoring().size() ? this.config.scoring().get(i) : 0;
             teamPoints.put(team, teamPoints.getOrDefault(team, 0) + points);
 
@@ -496,10 +527,10 @@ public class RaceStageManager {
             positionsText.append(Text.literal("/").formatted(Formatting.RED, Formatting.BOLD)).append(" ");
 
             if (laps < this.getLeadingLaps()) {
-                positionsText.append(TextUtils.chatLapsDelta(this.getLeadingLaps(), this.checkpoints.getLaps(player)))
+                positionsText.append(TextUtils.chatLapsDelta(this.getLeadingLaps(), laps))
                         .append("  ");
             } else {
-                positionsText.append(TextUtils.actionBarTimer(this.positions.getTimer(player))).append("  ");
+                positionsText.append(TextUtils.actionBarTimer(this.positions.getTimer(id))).append("  ");
             }
 
             positionsText.append(TextUtils.chatPoints(points));
@@ -542,7 +573,7 @@ public class RaceStageManager {
             int memberBestPosition = positions.size() - 1;
             Set<BoatRacePlayer> members = this.teams.getPlayersIn(teamKey, positions);
             for (BoatRacePlayer player : members) {
-                int position = this.positions.getPosition(player);
+                int position = this.positions.getPosition(this.players.getId(player));
                 if (position < memberBestPosition) {
                     memberBestPosition = position;
                 }
@@ -1,13 +1,18 @@
 package com.abaan404.boatrace.game.race;
 
 import java.util.List;
-import java.util.Map;
 
+import com.abaan404.boatrace.BoatRaceConfig;
 import com.abaan404.boatrace.BoatRacePlayer;
 import com.abaan404.boatrace.BoatRaceTrack;
+import com.abaan404.boatrace.utils.ActionBarCache;
+import com.abaan404.boatrace.utils.SidebarCache;
 import com.abaan404.boatrace.utils.TextUtils;
 
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import net.minecraft.network.packet.s2c.play.OverlayMessageS2CPacket;
 import net.minecraft.network.packet.s2c.play.TitleFadeS2CPacket;
 import net.minecraft.network.packet.s2c.play.TitleS2CPacket;
@@ -28,15 +33,20 @@ public class RaceWidgets {
     private static final int SIDEBAR_RANKING_COMPARED = 2;
     private static final int SIDEBAR_RANKING_TOP = 5;
 
-    private final Map<BoatRacePlayer, LeaderboardType> leaderboardType = new Object2ObjectOpenHashMap<>();
-    private final Map<BoatRacePlayer, SidebarWidget> sidebars = new Object2ObjectOpenHashMap<>();
+    private final Int2ObjectMap<LeaderboardType> leaderboardType = new Int2ObjectOpenHashMap<>();
+    private final Int2ObjectMap<SidebarCache> sidebars = new Int2ObjectOpenHashMap<>();
+    private final List<Text> meta;
+    private final ActionBarCache actionBar;
 
     private boolean shownGo = false;
 
-    public RaceWidgets(GameSpace gameSpace, GlobalWidgets widgets, BoatRaceTrack track) {
+    public RaceWidgets(GameSpace gameSpace, GlobalWidgets widgets, BoatRaceTrack track,
+            BoatRaceConfig.ActionBar actionBar) {
         this.gameSpace = gameSpace;
         this.track = track;
         this.widgets = widgets;
+        this.meta = TextUtils.scoreboardMeta(track.getMeta());
+        this.actionBar = new ActionBarCache(actionBar);
     }
 
     /**
@@ -75,8 +85,8 @@ public class RaceWidgets {
         }
 
         for (ServerPlayerEntity player : this.gameSpace.getPlayers()) {
-            player.networkHandler.sendPacket(new TitleFadeS2CPacket(0, 30, 20));
-            player.networkHandler.sendPacket(new TitleS2CPacket(TextUtils.titleCountdown(countdown)));
+            stageManager.packets.send(player, new TitleFadeS2CPacket(0, 30, 20));
+            stageManager.packets.send(player, new TitleS2CPacket(TextUtils.titleCountdown(countdown)));
         }
     }
 
@@ -93,15 +103,22 @@ public class RaceWidgets {
             case LINEAR -> this.track.getRegions().checkpoints().size() - 2;
         };
 
+        this.actionBar.tick();
+
         for (ServerPlayerEntity player : this.gameSpace.getPlayers()) {
-            BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
-            if (!stageManager.isParticipant(bPlayer)) {
+            int id = stageManager.players.getId(player);
+            if (!stageManager.isParticipant(id)) {
                 continue;
             }
 
-            long timer = stageManager.splits.getTimer(bPlayer);
-            int position = stageManager.positions.getPosition(bPlayer);
-            int checkpoint = stageManager.checkpoints.getCheckpointIndex(bPlayer);
+            int position = stageManager.positions.getPosition(id);
+            int checkpoint = stageManager.checkpoints.getCheckpointIndex(id);
+
+            if (!this.actionBar.shouldRefresh(id, position, checkpoint)) {
+                continue;
+            }
+
+            long timer = stageManager.splits.getTimer(id);
 
             MutableText actionBarText = Text.empty();
 
@@ -109,130 +126,148 @@ public class RaceWidgets {
             actionBarText.append(TextUtils.actionBarTimer(timer)).append(" ");
 
             if (position > 0) {
-                BoatRacePlayer playerAhead = stageManager.positions.getPositions().get(position - 1);
-                long delta = stageManager.positions.getDeltaCheckpoint(bPlayer, playerAhead);
+                int playerAhead = stageManager.positions.getPositions().getInt(position - 1);
+                long delta = stageManager.positions.getDeltaCheckpoint(id, playerAhead);
 
                 actionBarText.append(TextUtils.actionBarDelta(delta)).append(" ");
             }
 
             actionBarText.append(TextUtils.actionBarCheckpoint(Math.max(0, checkpoint), maxCheckpoints));
 
-            player.networkHandler.sendPacket(new OverlayMessageS2CPacket(actionBarText));
+            if (this.actionBar.update(id, position, checkpoint, actionBarText)) {
+                stageManager.packets.send(player, new OverlayMessageS2CPacket(actionBarText));
+            }
         }
     }
 
     /**
-     * Displays track meta and track leaderboard.
+     * Displays track meta and track leaderboard. Lines are only rebuilt when
+     * something they show has changed.
      */
     private void tickSidebar(RaceStageManager stageManager) {
         for (ServerPlayerEntity player : this.gameSpace.getPlayers()) {
-            BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
+            int id = stageManager.players.getId(player);
 
-            if (!this.sidebars.containsKey(bPlayer)) {
+            if (!this.sidebars.containsKey(id)) {
                 SidebarWidget newSidebar = this.widgets.addSidebar(
                         TextUtils.scoreboardTitleText("Race"),
-                        p -> BoatRacePlayer.of(p).equals(bPlayer));
+                        p -> stageManager.players.getId(p) == id);
                 newSidebar.addPlayer(player);
-                this.sidebars.put(bPlayer, newSidebar);
+                this.sidebars.put(id, new SidebarCache(newSidebar));
             }
 
-            SidebarWidget sidebar = this.sidebars.get(bPlayer);
+            SidebarCache sidebar = this.sidebars.get(id);
+            LeaderboardType leaderboardType = this.leaderboardType.getOrDefault(id, LeaderboardType.PLAYER);
 
-            sidebar.set(content -> {
-                content.add(Text.empty());
-                TextUtils.scoreboardMeta(this.track.getMeta()).forEach(content::add);
-                content.add(Text.empty());
+            if (!sidebar.hasChanged(
+                    stageManager.positions.getRevision(),
+                    stageManager.pits.getRevision(),
+                    stageManager.checkpoints.getLaps(id),
+                    stageManager.getDurationTimer() / 1000,
+                    leaderboardType.ordinal())) {
+                continue;
+            }
 
-                content.add(TextUtils.scoreboardLaps(
-                        stageManager.checkpoints.getLaps(bPlayer),
-                        stageManager.getMaxLaps()));
+            List<Text> content = new ObjectArrayList<>();
 
-                if (stageManager.getRequiredPits() > 0) {
-                    content.add(TextUtils.scoreboardPits(
-                            stageManager.pits.getPits(bPlayer),
-                            stageManager.getRequiredPits()));
-                }
+            content.add(Text.empty());
+            content.addAll(this.meta);
+            content.add(Text.empty());
 
-                content.add(TextUtils.scoreboardDuration(
-                        stageManager.getDurationTimer(),
-                        stageManager.getConfig().maxDuration()));
-                content.add(Text.empty());
+            content.add(TextUtils.scoreboardLaps(
+                    stageManager.checkpoints.getLaps(id),
+                    stageManager.getMaxLaps()));
 
-                List<BoatRacePlayer> positions = stageManager.positions.getPositions();
+            if (stageManager.getRequiredPits() > 0) {
+                content.add(TextUtils.scoreboardPits(
+                        stageManager.pits.getPits(id),
+                        stageManager.getRequiredPits()));
+            }
 
-                if (positions.isEmpty()) {
-                    content.add(Text.literal(" No times submitted.")
-                            .formatted(Formatting.DARK_GRAY, Formatting.ITALIC));
-                    return;
-                }
+            content.add(TextUtils.scoreboardDuration(
+                    stageManager.getDurationTimer(),
+                    stageManager.getConfig().maxDuration()));
+            content.add(Text.empty());
 
-                int position = stageManager.positions.getPosition(bPlayer);
-                LeaderboardType leaderboardType = this.leaderboardType.getOrDefault(bPlayer, LeaderboardType.PLAYER);
-
-                for (Pair<Integer, BoatRacePlayer> pair : TextUtils.scoreboardAroundAndTop(
-                        positions,
-                        position,
-                        SIDEBAR_RANKING_TOP,
-                        SIDEBAR_RANKING_COMPARED)) {
-                    if (pair == null) {
-                        content.add(TextUtils.PAD_SCOREBOARD_POSITION);
-                        continue;
-                    }
+            IntList positions = stageManager.positions.getPositions();
 
-                    MutableText text = Text.empty();
-                    BoatRacePlayer player2 = pair.getRight();
-                    int position2 = pair.getLeft();
-                    boolean highlighted = bPlayer.equals(player2);
+            if (positions.isEmpty()) {
+                content.add(Text.literal(" No times submitted.")
+                        .formatted(Formatting.DARK_GRAY, Formatting.ITALIC));
+                sidebar.set(content);
+                continue;
+            }
+
+            int position = stageManager.positions.getPosition(id);
+            int leader = positions.getInt(0);
+
+            for (Pair<Integer, Integer> pair : TextUtils.scoreboardAroundAndTop(
+                    positions,
+                    position,
+                    SIDEBAR_RANKING_TOP,
+                    SIDEBAR_RANKING_COMPARED)) {
+                if (pair == null) {
+                    content.add(TextUtils.PAD_SCOREBOARD_POSITION);
+                    continue;
+                }
 
-                    text.append(" ");
-                    text.append(TextUtils.scoreboardPosition(highlighted, position2)).append(" ");
+                MutableText text = Text.empty();
+                int id2 = pair.getRight();
+                BoatRacePlayer player2 = stageManager.players.getPlayer(id2);
+                int position2 = pair.getLeft();
+                boolean highlighted = id == id2;
 
-                    switch (leaderboardType) {
-                        case LEADER: {
-                            if (player2.equals(positions.getFirst())) {
-                                break;
-                            }
+                text.append(" ");
+                text.append(TextUtils.scoreboardPosition(highlighted, position2)).append(" ");
 
-                            long delta = stageManager.positions.getDelta(player2, positions.getFirst());
-                            text.append(TextUtils.scoreboardRelative(delta)).append(" ");
+                switch (leaderboardType) {
+                    case LEADER: {
+                        if (id2 == leader) {
                             break;
                         }
-                        case PLAYER: {
-                            if (player2.equals(bPlayer)) {
-                                break;
-                            }
 
-                            long delta = stageManager.positions.getDelta(bPlayer, player2);
-                            text.append(TextUtils.scoreboardRelative(delta)).append(" ");
+                        long delta = stageManager.positions.getDelta(id2, leader);
+                        text.append(TextUtils.scoreboardRelative(delta)).append(" ");
+                        break;
+                    }
+                    case PLAYER: {
+                        if (id2 == id) {
                             break;
                         }
-                    }
-
-                    text.append(TextUtils.scoreboardName(player2, stageManager.teams.getConfig(player2), highlighted,
-                            position2)).append(" ");
 
-                    if (stageManager.getRequiredPits() > 0 && !bPlayer.equals(player2)) {
-                        text.append(TextUtils.scoreboardLeaderboardPits(stageManager.pits.getPits(player2)))
-                                .append(" ");
+                        long delta = stageManager.positions.getDelta(id, id2);
+                        text.append(TextUtils.scoreboardRelative(delta)).append(" ");
+                        break;
                     }
+                }
+
+                text.append(TextUtils.scoreboardName(player2, stageManager.teams.getConfig(player2), highlighted,
+                        position2)).append(" ");
 
-                    content.add(text);
+                if (stageManager.getRequiredPits() > 0 && id != id2) {
+                    text.append(TextUtils.scoreboardLeaderboardPits(stageManager.pits.getPits(id2)))
+                            .append(" ");
                 }
-            });
+
+                content.add(text);
+            }
+
+            sidebar.set(content);
         }
     }
 
     /**
      * Cycle active leaderboard type.
      *
-     * @param player The player whos leaderboard should be updated.
+     * @param stageManager The stage manager.
+     * @param player       The player whos leaderboard should be updated.
      */
-    public LeaderboardType cycleLeaderboard(ServerPlayerEntity player) {
-        BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
+    public LeaderboardType cycleLeaderboard(RaceStageManager stageManager, ServerPlayerEntity player) {
+        int id = stageManager.players.getId(player);
 
-        LeaderboardType leaderboardType = this.leaderboardType.getOrDefault(bPlayer, LeaderboardType.PLAYER);
+        LeaderboardType leaderboardType = this.leaderboardType.getOrDefault(id, LeaderboardType.PLAYER);
         leaderboardType = LeaderboardType.values()[(leaderboardType.ordinal() + 1) % LeaderboardType.values().length];
-        this.leaderboardType.put(bPlayer, leaderboardType);
+        this.leaderboardType.put(id, leaderboardType);
 
         player.sendMessage(TextUtils.chatLeaderboardType(leaderboardType));
         return leaderboardType;
@@ -1,13 +1,22 @@
 package com.abaan404.boatrace.game.timetrial;
 
+import java.util.List;
+
+import com.abaan404.boatrace.BoatRaceConfig;
 import com.abaan404.boatrace.BoatRaceGameRules;
 import com.abaan404.boatrace.BoatRaceItems;
 import com.abaan404.boatrace.BoatRacePlayer;
 import com.abaan404.boatrace.BoatRaceTrack;
 import com.abaan404.boatrace.events.PlayerDismountEvent;
 import com.abaan404.boatrace.gameplay.DesyncIndicator;
+import com.abaan404.boatrace.gameplay.GhostPlayback;
+import com.abaan404.boatrace.gameplay.PlayerRegistry;
+import com.abaan404.boatrace.gameplay.TrackPreloader;
+import com.abaan404.boatrace.utils.TextUtils;
 import com.mojang.authlib.GameProfile;
 
+import net.minecraft.component.DataComponentTypes;
+import net.minecraft.component.type.CustomModelDataComponent;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.damage.DamageSource;
 import net.minecraft.item.ItemStack;
@@ -38,16 +47,19 @@ public class TimeTrial {
     private final TimeTrialStageManager stageManager;
     private final TimeTrialWidgets widgets;
 
-    private TimeTrial(GameSpace gameSpace, ServerWorld world, BoatRaceTrack track, GlobalWidgets widgets) {
-        this.stageManager = new TimeTrialStageManager(gameSpace, world, track);
-        this.widgets = new TimeTrialWidgets(gameSpace, widgets, track);
+    private TimeTrial(GameSpace gameSpace, ServerWorld world, BoatRaceTrack track, PlayerRegistry players,
+            BoatRaceConfig.ActionBar actionBar, GlobalWidgets widgets) {
+        this.stageManager = new TimeTrialStageManager(gameSpace, world, track, players);
+        this.widgets = new TimeTrialWidgets(gameSpace, widgets, track, actionBar);
     }
 
-    public static void open(GameActivity game, ServerWorld world, BoatRaceTrack track) {
+    public static void open(GameActivity game, ServerWorld world, BoatRaceTrack track, PlayerRegistry players,
+            BoatRaceConfig.ActionBar actionBar) {
         GlobalWidgets widgets = GlobalWidgets.addTo(game);
-        DesyncIndicator.addTo(game, world);
+        DesyncIndicator.addTo(game, world, players);
+        TrackPreloader.addTo(game, world, track);
 
-        TimeTrial timeTrial = new TimeTrial(game.getGameSpace(), world, track, widgets);
+        TimeTrial timeTrial = new TimeTrial(game.getGameSpace(), world, track, players, actionBar, widgets);
 
         world.getGameRules().get(GameRules.DO_DAYLIGHT_CYCLE).set(false, game.getGameSpace().getServer());
         world.setTimeOfDay(track.getAttributes().timeOfDay());
@@ -64,6 +76,7 @@ public class TimeTrial {
         game.setRule(GameRuleType.BREAK_BLOCKS, EventResult.DENY);
         game.setRule(BoatRaceGameRules.SINGLE_SEAT, EventResult.ALLOW);
         game.setRule(BoatRaceGameRules.MODIFY_INVENTORIES, EventResult.DENY);
+        BoatRaceGameRules.addTo(game);
 
         game.listen(PlayerDamageEvent.EVENT, (player, source, amount) -> EventResult.DENY);
         game.listen(PlayerDeathEvent.EVENT, timeTrial::onPlayerDeath);
@@ -76,6 +89,7 @@ public class TimeTrial {
         game.listen(GamePlayerEvents.REMOVE, timeTrial::removePlayer);
 
         game.listen(GameActivityEvents.TICK, timeTrial::tick);
+        game.listen(GameActivityEvents.DISABLE, timeTrial.stageManager::close);
     }
 
     private JoinOfferResult.Accept offerPlayer(JoinOffer offer) {
@@ -113,8 +127,7 @@ public class TimeTrial {
     }
 
     private EventResult onDismount(ServerPlayerEntity player, Entity vehicle) {
-        vehicle.discard();
-        this.stageManager.toSpectator(BoatRacePlayer.of(player));
+        this.stageManager.despawnPlayer(player);
         this.stageManager.updatePlayerInventory(player);
 
         return EventResult.DENY;
@@ -125,15 +138,7 @@ public class TimeTrial {
 
         // turn them into a participant and spawn them as if they just started
         if (item.getItem().equals(BoatRaceItems.RESET)) {
-            BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
-
-            this.stageManager.toParticipant(bPlayer);
-            this.stageManager.spawnPlayer(player);
-            this.stageManager.updatePlayerInventory(player);
-            this.stageManager.checkpoints.reset(bPlayer);
-            this.stageManager.splits.reset(bPlayer);
-            this.stageManager.splits.stop(bPlayer);
-
+            this.stageManager.resetPlayer(player);
             return ActionResult.CONSUME;
         }
 
@@ -144,6 +149,19 @@ public class TimeTrial {
             return ActionResult.CONSUME;
         }
 
+        // cycle which ghost to race against
+        else if (item.getItem().equals(BoatRaceItems.CYCLE_GHOST)) {
+            GhostPlayback.Mode mode = this.stageManager.playback.cycle(this.stageManager.players.getId(player));
+            item.set(DataComponentTypes.CUSTOM_MODEL_DATA, new CustomModelDataComponent(
+                    List.of(),
+                    List.of(),
+                    List.of(mode.toString()),
+                    List.of()));
+
+            player.sendMessage(TextUtils.chatGhostMode(mode));
+            return ActionResult.CONSUME;
+        }
+
         return ActionResult.PASS;
     }
 
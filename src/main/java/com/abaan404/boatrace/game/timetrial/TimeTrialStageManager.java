@@ -1,20 +1,30 @@
 package com.abaan404.boatrace.game.timetrial;
 
-import java.util.Set;
+import java.util.List;
 
+import com.abaan404.boatrace.BoatRace;
 import com.abaan404.boatrace.BoatRaceItems;
 import com.abaan404.boatrace.BoatRacePlayer;
 import com.abaan404.boatrace.BoatRaceTrack;
+import com.abaan404.boatrace.gameplay.BoatPool;
 import com.abaan404.boatrace.gameplay.Checkpoints;
+import com.abaan404.boatrace.gameplay.GhostPlayback;
+import com.abaan404.boatrace.gameplay.GhostRecorder;
+import com.abaan404.boatrace.gameplay.PlayerRegistry;
 import com.abaan404.boatrace.gameplay.SpawnLogic;
 import com.abaan404.boatrace.gameplay.Splits;
+import com.abaan404.boatrace.leaderboard.Ghost;
 import com.abaan404.boatrace.leaderboard.Leaderboard;
 import com.abaan404.boatrace.leaderboard.PersonalBest;
 import com.abaan404.boatrace.utils.TextUtils;
 
-import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
 import net.minecraft.block.NoteBlock;
+import net.minecraft.component.DataComponentTypes;
+import net.minecraft.component.type.CustomModelDataComponent;
 import net.minecraft.entity.player.PlayerInventory;
+import net.minecraft.item.ItemStack;
 import net.minecraft.network.packet.s2c.play.SubtitleS2CPacket;
 import net.minecraft.network.packet.s2c.play.TitleFadeS2CPacket;
 import net.minecraft.network.packet.s2c.play.TitleS2CPacket;
@@ -39,19 +49,25 @@ public class TimeTrialStageManager {
 
     public final Checkpoints checkpoints;
     public final Splits splits;
+    public final PlayerRegistry players;
+    public final GhostPlayback playback;
 
     private final SpawnLogic spawnLogic;
-    private final Set<BoatRacePlayer> participants = new ObjectOpenHashSet<>();
+    private final GhostRecorder ghosts = new GhostRecorder();
+    private final IntSet participants = new IntOpenHashSet();
 
-    public TimeTrialStageManager(GameSpace gameSpace, ServerWorld world, BoatRaceTrack track) {
+    public TimeTrialStageManager(GameSpace gameSpace, ServerWorld world, BoatRaceTrack track,
+            PlayerRegistry players) {
         this.gameSpace = gameSpace;
         this.track = track;
         this.world = world;
+        this.players = players;
 
         this.checkpoints = new Checkpoints(track);
-        this.splits = new Splits();
+        this.splits = new Splits(track);
 
-        this.spawnLogic = new SpawnLogic(world);
+        this.spawnLogic = new SpawnLogic(world, track);
+        this.playback = new GhostPlayback(world);
     }
 
     /**
@@ -60,10 +76,9 @@ public class TimeTrialStageManager {
      * @param player The player.
      */
     public void spawnPlayer(ServerPlayerEntity player) {
-        BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
         BoatRaceTrack.Regions regions = this.track.getRegions();
 
-        if (!this.participants.contains(bPlayer)) {
+        if (!this.participants.contains(this.players.getId(player))) {
             this.spawnLogic.resetPlayer(player, GameMode.SPECTATOR);
             this.spawnLogic.spawnPlayer(player, regions.spawn());
             return;
@@ -80,18 +95,38 @@ public class TimeTrialStageManager {
      * @param player The player.
      */
     public void respawnPlayer(ServerPlayerEntity player) {
-        BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
+        int id = this.players.getId(player);
         BoatRaceTrack.Regions regions = this.track.getRegions();
 
-        if (!this.participants.contains(bPlayer)) {
+        if (!this.participants.contains(id)) {
             return;
         }
 
         this.spawnLogic.resetPlayer(player, GameMode.ADVENTURE);
-        this.spawnLogic.spawnPlayer(player, this.checkpoints.getCheckpoint(bPlayer).orElse(regions.spawn()));
+        this.spawnLogic.spawnPlayer(player, this.checkpoints.getCheckpoint(id).orElse(regions.spawn()));
         this.spawnLogic.spawnVehicleAndRide(player).orElseThrow();
     }
 
+    /**
+     * Turn a player into a participant and spawn them as if they just started,
+     * throwing away their current run.
+     *
+     * @param player The player.
+     */
+    public void resetPlayer(ServerPlayerEntity player) {
+        int id = this.players.getId(player);
+
+        this.toParticipant(BoatRacePlayer.of(player));
+        this.spawnPlayer(player);
+        this.updatePlayerInventory(player);
+
+        this.checkpoints.reset(id);
+        this.splits.reset(id);
+        this.splits.stop(id);
+        this.ghosts.stop(id);
+        this.playback.stop(id);
+    }
+
     /**
      * Gives the players items to control their state on track.
      *
@@ -101,9 +136,19 @@ public class TimeTrialStageManager {
         PlayerInventory inventory = player.getInventory();
         inventory.clear();
 
-        if (this.participants.contains(BoatRacePlayer.of(player))) {
+        int id = this.players.getId(player);
+
+        if (this.participants.contains(id)) {
+            ItemStack cycleGhost = BoatRaceItems.CYCLE_GHOST.getDefaultStack();
+            cycleGhost.set(DataComponentTypes.CUSTOM_MODEL_DATA, new CustomModelDataComponent(
+                    List.of(),
+                    List.of(),
+                    List.of(this.playback.getMode(id).toString()),
+                    List.of()));
+
             inventory.setStack(8, BoatRaceItems.RESET.getDefaultStack());
             inventory.setStack(7, BoatRaceItems.RESPAWN.getDefaultStack());
+            inventory.setStack(6, cycleGhost);
         } else {
             inventory.setStack(8, BoatRaceItems.RESET.getDefaultStack());
         }
@@ -116,50 +161,69 @@ public class TimeTrialStageManager {
      */
     public void despawnPlayer(ServerPlayerEntity player) {
         this.toSpectator(BoatRacePlayer.of(player));
+        this.spawnLogic.despawnVehicle(player);
 
         PlayerInventory inventory = player.getInventory();
         inventory.clear();
     }
 
+    /**
+     * Clean up after the game, call once when it ends.
+     */
+    public void close() {
+        BoatPool.Metrics metrics = this.spawnLogic.close();
+        BoatRace.LOGGER.debug("Boat pool created {}, reused {} and discarded {} boats", metrics.created(),
+                metrics.reused(), metrics.discarded());
+    }
+
     /**
      * Tick the player and act on events from checkpoints and/or splits.
      */
     public void tickPlayers() {
         for (ServerPlayerEntity player : this.gameSpace.getPlayers()) {
-            BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
+            int id = this.players.getId(player);
 
-            if (!this.participants.contains(bPlayer)) {
+            if (!this.participants.contains(id)) {
                 continue;
             }
 
-            switch (this.checkpoints.tick(player)) {
+            // before a new run starts so its first frame is shown on the tick it was recorded
+            this.playback.tick(id);
+
+            switch (this.checkpoints.tick(player, id)) {
                 case BEGIN: {
-                    this.splits.run(bPlayer);
-                    this.splits.recordSplit(bPlayer);
+                    this.splits.run(id);
+                    this.splits.recordStart(this.world, id, this.checkpoints.getCrossing());
+                    this.ghosts.start(id);
+                    this.playback.start(player, id, this.getGhost(id));
                     break;
                 }
 
                 case LOOP: {
-                    this.splits.recordSplit(bPlayer);
+                    this.splits.recordSplit(this.world, id, this.checkpoints.getCrossing());
                     this.submit(player);
 
                     // start a new run
-                    this.splits.reset(bPlayer);
-                    this.splits.recordSplit(bPlayer);
+                    this.splits.reset(id);
+                    this.splits.recordStart(this.world, id, this.checkpoints.getCrossing());
+                    this.ghosts.start(id);
+                    this.playback.start(player, id, this.getGhost(id));
                     break;
                 }
 
                 case FINISH: {
-                    this.splits.recordSplit(bPlayer);
+                    this.splits.recordSplit(this.world, id, this.checkpoints.getCrossing());
                     this.submit(player);
 
                     // stop the timer
-                    this.splits.stop(bPlayer);
+                    this.splits.stop(id);
+                    this.ghosts.stop(id);
+                    this.playback.stop(id);
                     break;
                 }
 
                 case CHECKPOINT: {
-                    this.splits.recordSplit(bPlayer);
+                    this.splits.recordSplit(this.world, id, this.checkpoints.getCrossing());
                     break;
                 }
 
@@ -177,6 +241,8 @@ public class TimeTrialStageManager {
                     break;
                 }
             }
+
+            this.ghosts.record(id, player.getRootVehicle());
         }
 
         this.splits.tick(this.world);
@@ -188,15 +254,17 @@ public class TimeTrialStageManager {
      * @param player The player.
      */
     public void toSpectator(BoatRacePlayer player) {
-        if (!this.participants.contains(player)) {
+        int id = this.players.getId(player);
+
+        if (!this.participants.remove(id)) {
             return;
         }
 
-        this.participants.remove(player);
-
-        this.checkpoints.reset(player);
-        this.splits.reset(player);
-        this.splits.stop(player);
+        this.checkpoints.reset(id);
+        this.splits.reset(id);
+        this.splits.stop(id);
+        this.ghosts.stop(id);
+        this.playback.stop(id);
     }
 
     /**
@@ -205,25 +273,53 @@ public class TimeTrialStageManager {
      * @param player The player.
      */
     public void toParticipant(BoatRacePlayer player) {
-        if (this.participants.contains(player)) {
+        int id = this.players.getId(player);
+
+        if (!this.participants.add(id)) {
             return;
         }
 
-        this.participants.add(player);
-
-        this.checkpoints.reset(player);
-        this.splits.reset(player);
-        this.splits.stop(player);
+        this.checkpoints.reset(id);
+        this.splits.reset(id);
+        this.splits.stop(id);
+        this.ghosts.stop(id);
+        this.playback.stop(id);
     }
 
     /**
      * Check if the player is a participant.
      *
-     * @param player The player.
+     * @param id The player's id.
      * @return If they are on track ready to set a time.
      */
-    public boolean isParticipant(BoatRacePlayer player) {
-        return this.participants.contains(player);
+    public boolean isParticipant(int id) {
+        return this.participants.contains(id);
+    }
+
+    /**
+     * Get the ghost the player chose to race against.
+     *
+     * @param id The player's id.
+     * @return The ghost, empty if there is none to race.
+     */
+    private Ghost getGhost(int id) {
+        Leaderboard leaderboard = Leaderboard.getPersistent(this.gameSpace.getServer());
+
+        switch (this.playback.getMode(id)) {
+            case PERSONAL_BEST: {
+                return leaderboard.getPersonalBest(this.track, this.players.getPlayer(id)).ghost();
+            }
+
+            case RECORD: {
+                List<PersonalBest> records = leaderboard.getLeaderboard(this.track);
+                return records.isEmpty() ? Ghost.EMPTY : records.get(0).ghost();
+            }
+
+            case OFF:
+            default: {
+                return Ghost.EMPTY;
+            }
+        }
     }
 
     /**
@@ -232,17 +328,18 @@ public class TimeTrialStageManager {
      * @param player The player to create a new pb for.
      */
     private void submit(ServerPlayerEntity player) {
-        BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
+        int id = this.players.getId(player);
+        BoatRacePlayer bPlayer = this.players.getPlayer(id);
 
-        // use the overworld for persistent storage
         ServerWorld overworld = this.gameSpace.getServer().getWorld(World.OVERWORLD);
-        Leaderboard leaderboard = overworld.getAttachedOrCreate(Leaderboard.ATTACHMENT);
+        Leaderboard leaderboard = Leaderboard.getPersistent(this.gameSpace.getServer());
 
-        PersonalBest pb = new PersonalBest(bPlayer, this.splits.getSplits(bPlayer));
-        Leaderboard newLeaderboard = leaderboard.trySubmit(overworld, this.track, pb);
+        // the frame crossing the line belongs to the run it finishes
+        this.ghosts.record(id, player.getRootVehicle());
 
-        if (newLeaderboard != leaderboard) {
-            int position = newLeaderboard.getLeaderboardPosition(this.track, bPlayer);
+        PersonalBest pb = new PersonalBest(bPlayer, this.splits.getSplits(id), this.ghosts.finish(id));
+        if (leaderboard.trySubmit(overworld, this.track, pb)) {
+            int position = leaderboard.getLeaderboardPosition(this.track, bPlayer);
             GameSpacePlayers players = this.gameSpace.getPlayers();
 
             players.sendMessage(TextUtils.chatNewPersonalBest(pb, position));
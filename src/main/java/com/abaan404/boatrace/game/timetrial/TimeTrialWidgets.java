@@ -1,23 +1,25 @@
 package com.abaan404.boatrace.game.timetrial;
 
 import java.util.List;
-import java.util.Map;
 
+import com.abaan404.boatrace.BoatRaceConfig;
 import com.abaan404.boatrace.BoatRacePlayer;
 import com.abaan404.boatrace.BoatRaceTrack;
 import com.abaan404.boatrace.leaderboard.Leaderboard;
 import com.abaan404.boatrace.leaderboard.PersonalBest;
+import com.abaan404.boatrace.leaderboard.TrackLeaderboard;
+import com.abaan404.boatrace.utils.ActionBarCache;
+import com.abaan404.boatrace.utils.SidebarCache;
 import com.abaan404.boatrace.utils.TextUtils;
 
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
-import net.minecraft.network.packet.s2c.play.OverlayMessageS2CPacket;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import net.minecraft.server.network.ServerPlayerEntity;
-import net.minecraft.server.world.ServerWorld;
 import net.minecraft.text.MutableText;
 import net.minecraft.text.Text;
 import net.minecraft.util.Formatting;
 import net.minecraft.util.Pair;
-import net.minecraft.world.World;
 import xyz.nucleoid.plasmid.api.game.GameSpace;
 import xyz.nucleoid.plasmid.api.game.common.GlobalWidgets;
 import xyz.nucleoid.plasmid.api.game.common.team.GameTeamConfig;
@@ -28,15 +30,27 @@ public final class TimeTrialWidgets {
     private final GlobalWidgets widgets;
     private final BoatRaceTrack track;
 
-    private final Map<BoatRacePlayer, SidebarWidget> sidebars = new Object2ObjectOpenHashMap<>();
+    private final Int2ObjectMap<SidebarCache> sidebars = new Int2ObjectOpenHashMap<>();
+    private final List<Text> meta;
+    private final ActionBarCache actionBar;
+
+    private final Int2ObjectMap<Text> rows = new Int2ObjectOpenHashMap<>();
+    private TrackLeaderboard rowsLeaderboard = null;
+    private int rowsRevision = 0;
 
     private static final int SIDEBAR_RANKING_COMPARED = 1;
     private static final int SIDEBAR_RANKING_TOP = 3;
 
-    public TimeTrialWidgets(GameSpace gameSpace, GlobalWidgets widgets, BoatRaceTrack track) {
+    private static final Text FREE_ROAM_TEXT = Text.literal("Free Roaming").formatted(Formatting.GRAY,
+            Formatting.ITALIC, Formatting.BOLD);
+
+    public TimeTrialWidgets(GameSpace gameSpace, GlobalWidgets widgets, BoatRaceTrack track,
+            BoatRaceConfig.ActionBar actionBar) {
         this.gameSpace = gameSpace;
         this.track = track;
         this.widgets = widgets;
+        this.meta = TextUtils.scoreboardMeta(track.getMeta());
+        this.actionBar = new ActionBarCache(actionBar);
     }
 
     /**
@@ -55,7 +69,7 @@ public final class TimeTrialWidgets {
      */
     public void tick(TimeTrialStageManager stageManager) {
         this.tickActionBar(stageManager);
-        this.tickSidebar();
+        this.tickSidebar(stageManager);
     }
 
     /**
@@ -64,8 +78,7 @@ public final class TimeTrialWidgets {
      * @param stageManager The stage manager.
      */
     private void tickActionBar(TimeTrialStageManager stageManager) {
-        ServerWorld overworld = this.gameSpace.getServer().getWorld(World.OVERWORLD);
-        Leaderboard leaderboard = overworld.getAttachedOrCreate(Leaderboard.ATTACHMENT);
+        Leaderboard leaderboard = Leaderboard.getPersistent(this.gameSpace.getServer());
 
         int maxCheckpoints = switch (this.track.getAttributes().layout()) {
             // dont count start
@@ -74,22 +87,25 @@ public final class TimeTrialWidgets {
             case LINEAR -> this.track.getRegions().checkpoints().size() - 2;
         };
 
+        this.actionBar.tick();
+
         for (ServerPlayerEntity player : this.gameSpace.getPlayers()) {
-            BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
-            if (!stageManager.isParticipant(bPlayer)) {
-                Text freeRoamText = Text.literal("Free Roaming").formatted(Formatting.GRAY, Formatting.ITALIC,
-                        Formatting.BOLD);
-                player.networkHandler.sendPacket(new OverlayMessageS2CPacket(freeRoamText));
+            int id = stageManager.players.getId(player);
+            BoatRacePlayer bPlayer = stageManager.players.getPlayer(id);
+            if (!stageManager.isParticipant(id)) {
+                this.actionBar.send(player, id, -1, -1, FREE_ROAM_TEXT);
                 continue;
             }
 
-            PersonalBest pb = leaderboard.getPersonalBest(this.track, bPlayer);
+            int position = leaderboard.getLeaderboardPosition(this.track, bPlayer);
+            int checkpoint = stageManager.checkpoints.getCheckpointIndex(id);
 
-            List<Long> currentSplits = stageManager.splits.getSplits(bPlayer);
+            if (!this.actionBar.shouldRefresh(id, position, checkpoint)) {
+                continue;
+            }
 
-            long timer = stageManager.splits.getTimer(bPlayer);
-            int position = leaderboard.getLeaderboardPosition(this.track, bPlayer);
-            int checkpoint = stageManager.checkpoints.getCheckpointIndex(bPlayer);
+            PersonalBest pb = leaderboard.getPersonalBest(this.track, bPlayer);
+            long timer = stageManager.splits.getTimer(id);
 
             MutableText actionBarText = Text.empty();
 
@@ -99,7 +115,7 @@ public final class TimeTrialWidgets {
             }
 
             if (checkpoint > 0 && pb.exists()) {
-                long delta = pb.getCheckpointDelta(currentSplits, checkpoint);
+                long delta = pb.getCheckpointDelta(stageManager.splits.getSplit(id, checkpoint), checkpoint);
                 actionBarText.append(TextUtils.actionBarTimer(timer)).append(" ");
                 actionBarText.append(TextUtils.actionBarDelta(delta)).append(" ");
             } else {
@@ -107,68 +123,101 @@ public final class TimeTrialWidgets {
             }
 
             actionBarText.append(TextUtils.actionBarCheckpoint(Math.max(0, checkpoint), maxCheckpoints));
-            player.networkHandler.sendPacket(new OverlayMessageS2CPacket(actionBarText));
+            this.actionBar.send(player, id, position, checkpoint, actionBarText);
         }
     }
 
     /**
-     * Displays track meta and track leaderboard.
+     * Displays track meta and track leaderboard. Lines are only rebuilt when
+     * the track's leaderboard has changed.
      */
-    private void tickSidebar() {
-        ServerWorld overworld = this.gameSpace.getServer().getWorld(World.OVERWORLD);
-        Leaderboard leaderboard = overworld.getAttachedOrCreate(Leaderboard.ATTACHMENT);
+    private void tickSidebar(TimeTrialStageManager stageManager) {
+        Leaderboard leaderboard = Leaderboard.getPersistent(this.gameSpace.getServer());
+        TrackLeaderboard trackLeaderboard = leaderboard.getTrackLeaderboard(this.track);
+
+        // rows are shared by every viewer until the leaderboard changes
+        if (trackLeaderboard != this.rowsLeaderboard || trackLeaderboard.getRevision() != this.rowsRevision) {
+            this.rows.clear();
+            this.rowsLeaderboard = trackLeaderboard;
+            this.rowsRevision = trackLeaderboard.getRevision();
+        }
 
         for (ServerPlayerEntity player : this.gameSpace.getPlayers()) {
-            BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
+            int id = stageManager.players.getId(player);
+            BoatRacePlayer bPlayer = stageManager.players.getPlayer(id);
 
-            if (!this.sidebars.containsKey(bPlayer)) {
+            if (!this.sidebars.containsKey(id)) {
                 SidebarWidget newSidebar = this.widgets.addSidebar(
                         TextUtils.scoreboardTitleText("TimeTrial"),
-                        p -> BoatRacePlayer.of(p).equals(bPlayer));
+                        p -> stageManager.players.getId(p) == id);
                 newSidebar.addPlayer(player);
 
-                this.sidebars.put(bPlayer, newSidebar);
+                this.sidebars.put(id, new SidebarCache(newSidebar));
             }
 
-            SidebarWidget sidebar = this.sidebars.get(bPlayer);
+            SidebarCache sidebar = this.sidebars.get(id);
 
-            sidebar.set(content -> {
-                content.add(Text.empty());
-                TextUtils.scoreboardMeta(this.track.getMeta()).forEach(content::add);
-                content.add(Text.empty());
+            if (!sidebar.hasChanged(trackLeaderboard.getRevision())) {
+                continue;
+            }
 
-                List<PersonalBest> records = leaderboard.getLeaderboard(this.track);
+            List<Text> content = new ObjectArrayList<>();
 
-                if (records.isEmpty()) {
-                    content.add(Text.literal(" No records submitted.")
-                            .formatted(Formatting.DARK_GRAY, Formatting.ITALIC));
-                    return;
-                }
+            content.add(Text.empty());
+            content.addAll(this.meta);
+            content.add(Text.empty());
 
-                int position = leaderboard.getLeaderboardPosition(this.track, bPlayer);
+            List<PersonalBest> records = trackLeaderboard.getRecords();
 
-                for (Pair<Integer, PersonalBest> pair : TextUtils.scoreboardAroundAndTop(
-                        records,
-                        position,
-                        SIDEBAR_RANKING_TOP,
-                        SIDEBAR_RANKING_COMPARED)) {
-                    if (pair == null) {
-                        content.add(TextUtils.PAD_SCOREBOARD_POSITION);
-                        continue;
-                    }
+            if (records.isEmpty()) {
+                content.add(Text.literal(" No records submitted.")
+                        .formatted(Formatting.DARK_GRAY, Formatting.ITALIC));
+                sidebar.set(content);
+                continue;
+            }
 
-                    MutableText text = Text.empty();
-                    PersonalBest pb = pair.getRight();
-                    boolean highlighted = bPlayer.equals(pb.player());
+            int position = trackLeaderboard.getPosition(bPlayer);
+
+            for (Pair<Integer, PersonalBest> pair : TextUtils.scoreboardAroundAndTop(
+                    records,
+                    position,
+                    SIDEBAR_RANKING_TOP,
+                    SIDEBAR_RANKING_COMPARED)) {
+                if (pair == null) {
+                    content.add(TextUtils.PAD_SCOREBOARD_POSITION);
+                    continue;
+                }
 
-                    text.append(" ");
-                    text.append(TextUtils.scoreboardPosition(highlighted, pair.getLeft())).append(" ");
-                    text.append(TextUtils.scoreboardAbsolute(pb.timer(), pair.getLeft())).append(" ");
-                    text.append(TextUtils.scoreboardName(pb.player(), GameTeamConfig.DEFAULT, highlighted, pair.getLeft()));
+                PersonalBest pb = pair.getRight();
+                int position2 = pair.getLeft();
 
-                    content.add(text);
+                if (bPlayer.equals(pb.player())) {
+                    content.add(this.createRow(pb, position2, true));
+                } else {
+                    content.add(this.rows.computeIfAbsent(position2, p -> this.createRow(pb, p, false)));
                 }
-            });
+            }
+
+            sidebar.set(content);
         }
     }
+
+    /**
+     * Create a leaderboard row.
+     *
+     * @param pb          The personal best.
+     * @param position    Its position.
+     * @param highlighted If the row belongs to the viewer.
+     * @return The row.
+     */
+    private Text createRow(PersonalBest pb, int position, boolean highlighted) {
+        MutableText text = Text.empty();
+
+        text.append(" ");
+        text.append(TextUtils.scoreboardPosition(highlighted, position)).append(" ");
+        text.append(TextUtils.scoreboardAbsolute(pb.timer(), position)).append(" ");
+        text.append(TextUtils.scoreboardName(pb.player(), GameTeamConfig.DEFAULT, highlighted, position));
+
+        return text;
+    }
 }
@@ -0,0 +1,158 @@
+package com.abaan404.boatrace.gameplay;
+
+import java.util.Optional;
+import java.util.Set;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityType;
+import net.minecraft.entity.SpawnReason;
+import net.minecraft.entity.vehicle.BoatEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.Vec3d;
+
+/**
+ * Keeps boats that are no longer ridden parked out of sight so they can be
+ * handed out again instead of spawning a new entity on every respawn.
+ */
+public class BoatPool {
+    // boats past this are killed instead of parked
+    private static final int CAPACITY = 32;
+
+    // boats having their riders taken off by a pool, the riders are not leaving on their own
+    private static final Set<Entity> RELEASING = new ReferenceOpenHashSet<>();
+
+    private final ServerWorld world;
+    private final ObjectArrayList<BoatEntity> idle = new ObjectArrayList<>();
+
+    private int created = 0;
+    private int reused = 0;
+    private int discarded = 0;
+
+    public BoatPool(ServerWorld world) {
+        this.world = world;
+    }
+
+    /**
+     * Get an idle boat moved to a position, or a new one if none are idle.
+     *
+     * @param pos   The position.
+     * @param yaw   The yaw.
+     * @param pitch The pitch.
+     * @return The boat, not yet ridden by anyone.
+     */
+    public Optional<BoatEntity> acquire(Vec3d pos, float yaw, float pitch) {
+        while (!this.idle.isEmpty()) {
+            BoatEntity boat = this.idle.pop();
+
+            // unloaded with its chunk or removed by something else
+            if (boat.isRemoved()) {
+                this.discarded++;
+                continue;
+            }
+
+            boat.setNoGravity(false);
+            boat.setVelocity(Vec3d.ZERO);
+            boat.setDamageWobbleTicks(0);
+            boat.setDamageWobbleStrength(0.0f);
+            boat.setFireTicks(0);
+            boat.fallDistance = 0.0f;
+            boat.refreshPositionAndAngles(pos, yaw, pitch);
+
+            this.reused++;
+            return Optional.of(boat);
+        }
+
+        BoatEntity boat = EntityType.OAK_BOAT.create(this.world, SpawnReason.COMMAND);
+        if (boat == null) {
+            return Optional.empty();
+        }
+
+        boat.refreshPositionAndAngles(pos, yaw, pitch);
+        this.world.spawnEntity(boat);
+
+        this.created++;
+        return Optional.of(boat);
+    }
+
+    /**
+     * Take the riders off a boat and park it, killing it if the pool is full. The
+     * riders are detached without firing a dismount event.
+     *
+     * @param boat The boat.
+     */
+    public void release(BoatEntity boat) {
+        if (boat.isRemoved()) {
+            boat.removeAllPassengers();
+            return;
+        }
+
+        RELEASING.add(boat);
+        try {
+            boat.removeAllPassengers();
+        } finally {
+            RELEASING.remove(boat);
+        }
+
+        // never park a boat somebody is still riding
+        if (!boat.getPassengerList().isEmpty()
+                || boat.getType() != EntityType.OAK_BOAT
+                || this.idle.size() >= BoatPool.CAPACITY) {
+            boat.kill(this.world);
+            this.discarded++;
+            return;
+        }
+
+        // park it at the bottom of the world, out of sight and under everything
+        boat.setNoGravity(true);
+        boat.setVelocity(Vec3d.ZERO);
+        boat.refreshPositionAndAngles(boat.getX(), this.world.getBottomY(), boat.getZ(), 0.0f, 0.0f);
+
+        this.idle.push(boat);
+    }
+
+    /**
+     * Kill every idle boat.
+     */
+    public void clear() {
+        for (BoatEntity boat : this.idle) {
+            if (!boat.isRemoved()) {
+                boat.kill(this.world);
+            }
+        }
+
+        this.discarded += this.idle.size();
+        this.idle.clear();
+    }
+
+    /**
+     * Check if a vehicle's riders are being taken off by a pool.
+     *
+     * @param vehicle The vehicle.
+     * @return If the vehicle is being released.
+     */
+    public static boolean isReleasing(Entity vehicle) {
+        return RELEASING.contains(vehicle);
+    }
+
+    /**
+     * Get the pool's counters.
+     *
+     * @return The metrics.
+     */
+    public Metrics getMetrics() {
+        return new Metrics(this.created, this.reused, this.discarded, this.idle.size());
+    }
+
+    /**
+     * How the pool has been used.
+     *
+     * @param created   Boats spawned because none were idle.
+     * @param reused    Boats handed out again from the pool.
+     * @param discarded Boats killed or lost instead of parked.
+     * @param idle      Boats currently parked.
+     */
+    public record Metrics(int created, int reused, int discarded, int idle) {
+    }
+}
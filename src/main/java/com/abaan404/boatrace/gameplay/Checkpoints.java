@@ -1,19 +1,15 @@
 package com.abaan404.boatrace.gameplay;
 
-import java.util.Map;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Optional;
-import java.util.Set;
 
-import com.abaan404.boatrace.BoatRacePlayer;
 import com.abaan404.boatrace.BoatRaceTrack;
+import com.abaan404.boatrace.BoatRaceTrack.RegionIndex;
 import com.abaan404.boatrace.BoatRaceTrack.RespawnRegion;
 
-import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import net.minecraft.server.network.ServerPlayerEntity;
-import net.minecraft.util.Pair;
-import net.minecraft.util.math.Vec3d;
 
 /**
  * Keeps track of checkpoints and verifies if the player crossed the correct
@@ -22,13 +18,21 @@ import net.minecraft.util.math.Vec3d;
 public class Checkpoints {
     private final BoatRaceTrack track;
 
-    private Map<BoatRacePlayer, Vec3d> prevPositions = new Object2ObjectOpenHashMap<>();
-    private Map<BoatRacePlayer, Pair<Integer, RespawnRegion>> checkpoints = new Object2ObjectOpenHashMap<>();
-    private Map<BoatRacePlayer, Integer> laps = new Object2IntOpenHashMap<>();
-    private Set<BoatRacePlayer> inRestart = new ObjectOpenHashSet<>();
-    private Set<BoatRacePlayer> began = new ObjectOpenHashSet<>();
-    private Set<BoatRacePlayer> canPit = new ObjectOpenHashSet<>();
-    private Set<BoatRacePlayer> inPit = new ObjectOpenHashSet<>();
+    private BitSet hasPrevPosition = new BitSet();
+    private double[] prevPositions = new double[0];
+    private int[] checkpoints = new int[0];
+    private RespawnRegion[] checkpointRegions = new RespawnRegion[0];
+    private int[] laps = new int[0];
+    private BitSet inRestart = new BitSet();
+    private BitSet began = new BitSet();
+    private BitSet canPit = new BitSet();
+    private BitSet inPit = new BitSet();
+
+    private final IntArrayList candidates = new IntArrayList();
+    private double fromX, fromY, fromZ;
+    private double toX, toY, toZ;
+    private double fraction = 1.0;
+    private double crossing = 1.0;
 
     public Checkpoints(BoatRaceTrack track) {
         this.track = track;
@@ -39,58 +43,85 @@ public class Checkpoints {
      * relevant results.
      *
      * @param player The player to tick.
+     * @param id     The player's id.
      * @return The resulting tick event.
      */
-    public TickResult tick(ServerPlayerEntity player) {
-        BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
+    public TickResult tick(ServerPlayerEntity player, int id) {
+        this.ensureCapacity(id);
 
         BoatRaceTrack.Regions regions = track.getRegions();
         BoatRaceTrack.Attributes attributes = track.getAttributes();
 
-        Vec3d pos = player.getEyePos();
-        Vec3d prevPos = this.prevPositions.getOrDefault(bPlayer, pos);
-        this.prevPositions.put(bPlayer, pos);
+        this.toX = player.getX();
+        this.toY = player.getEyeY();
+        this.toZ = player.getZ();
+
+        if (this.hasPrevPosition.get(id)) {
+            this.fromX = this.prevPositions[id * 3];
+            this.fromY = this.prevPositions[id * 3 + 1];
+            this.fromZ = this.prevPositions[id * 3 + 2];
+        } else {
+            this.fromX = this.toX;
+            this.fromY = this.toY;
+            this.fromZ = this.toZ;
+        }
+
+        this.prevPositions[id * 3] = this.toX;
+        this.prevPositions[id * 3 + 1] = this.toY;
+        this.prevPositions[id * 3 + 2] = this.toZ;
+        this.hasPrevPosition.set(id);
+
+        this.crossing = 1.0;
 
         // no checkpoints, do nothing
         if (regions.checkpoints().isEmpty()) {
             return TickResult.IDLE;
         }
 
-        int prevCheckpointIdx = this.getCheckpointIndex(bPlayer);
+        int prevCheckpointIdx = this.checkpoints[id];
         int nextCheckpointIdx = (prevCheckpointIdx + 1) % regions.checkpoints().size();
 
-        Optional<RespawnRegion> start = this.intersectAny(regions.checkpoints().getFirst(), pos, prevPos);
+        RegionIndex index = this.track.getRegionIndex();
+
+        // only test regions near the movement
+        index.query(this.fromX, this.fromZ, this.toX, this.toZ, this.candidates);
+
+        int start = this.intersectAny(0);
 
         // player has reached the starting line
-        if (!this.began.contains(bPlayer) && start.isPresent()) {
-            if (!this.inRestart.contains(bPlayer)) {
-                this.laps.put(bPlayer, this.laps.getOrDefault(bPlayer, 0) + 1);
+        if (!this.began.get(id) && start >= 0) {
+            if (!this.inRestart.get(id)) {
+                this.laps[id]++;
             }
 
-            this.began.add(bPlayer);
-            this.checkpoints.put(bPlayer, new Pair<>(nextCheckpointIdx, start.orElseThrow()));
-            this.canPit.add(bPlayer);
+            this.began.set(id);
+            this.checkpoints[id] = nextCheckpointIdx;
+            this.checkpointRegions[id] = index.getRegion(start);
+            this.crossing = this.fraction;
+            this.canPit.set(id);
             return TickResult.BEGIN;
         }
 
         // run hasnt began yet, do nothing
-        if (!this.began.contains(bPlayer)) {
+        if (!this.began.get(id)) {
             return TickResult.IDLE;
         }
 
-        Optional<RespawnRegion> next = this.intersectAny(regions.checkpoints().get(nextCheckpointIdx), pos, prevPos);
+        int next = this.intersectAny(nextCheckpointIdx);
 
         // reached the next checkpoint
-        if (next.isPresent()) {
-            this.checkpoints.put(bPlayer, new Pair<>(nextCheckpointIdx, next.orElseThrow()));
+        if (next >= 0) {
+            this.checkpoints[id] = nextCheckpointIdx;
+            this.checkpointRegions[id] = index.getRegion(next);
+            this.crossing = this.fraction;
 
             switch (attributes.layout()) {
                 case CIRCULAR: {
                     // checkpoint was looped back to the start
                     if (nextCheckpointIdx == 0) {
-                        this.laps.put(bPlayer, this.laps.getOrDefault(bPlayer, 0) + 1);
-                        this.canPit.add(bPlayer);
-                        this.inRestart.remove(bPlayer);
+                        this.laps[id]++;
+                        this.canPit.set(id);
+                        this.inRestart.clear(id);
                         return TickResult.LOOP;
                     }
 
@@ -100,9 +131,9 @@ public class Checkpoints {
                 case LINEAR: {
                     // checkpoint reached the end
                     if (nextCheckpointIdx == regions.checkpoints().size() - 1) {
-                        this.checkpoints.remove(bPlayer);
-                        this.began.remove(bPlayer);
-                        this.inRestart.remove(bPlayer);
+                        this.clearCheckpoint(id);
+                        this.began.clear(id);
+                        this.inRestart.clear(id);
                         return TickResult.FINISH;
                     }
 
@@ -113,29 +144,30 @@ public class Checkpoints {
             return TickResult.CHECKPOINT;
         }
 
-        if (this.canPit.contains(bPlayer) && regions.pitLane().isPresent()) {
-            RespawnRegion pitLane = regions.pitLane().orElseThrow();
+        if (this.canPit.get(id) && regions.pitLane().isPresent()) {
+            boolean inPitLane = this.intersectAny(RegionIndex.PIT_LANE) >= 0;
 
-            if (!this.inPit.contains(bPlayer) && pitLane.intersect(pos, prevPos)) {
-                this.inPit.add(bPlayer);
+            if (!this.inPit.get(id) && inPitLane) {
+                this.inPit.set(id);
 
                 return TickResult.PIT_ENTER;
             }
 
-            if (this.inPit.contains(bPlayer) && !pitLane.intersect(pos, prevPos)) {
-                this.inPit.remove(bPlayer);
-                this.canPit.remove(bPlayer);
+            if (this.inPit.get(id) && !inPitLane) {
+                this.inPit.clear(id);
+                this.canPit.clear(id);
 
                 return TickResult.PIT_EXIT;
             }
         }
 
-        // test if player went to an incorrect checkpoint
-        for (int i = 0; i < regions.checkpoints().size(); i++) {
-            Optional<RespawnRegion> checkpoint = this.intersectAny(regions.checkpoints().get(i), pos, prevPos);
+        // test if player went to an incorrect checkpoint, candidates are in track order
+        for (int i = 0; i < this.candidates.size(); i++) {
+            int entry = this.candidates.getInt(i);
+            int checkpointIdx = index.getGroup(entry);
 
-            if (checkpoint.isPresent()) {
-                if (i != nextCheckpointIdx && i != prevCheckpointIdx) {
+            if (checkpointIdx >= 0 && this.intersect(entry) >= 0.0) {
+                if (checkpointIdx != nextCheckpointIdx && checkpointIdx != prevCheckpointIdx) {
                     return TickResult.MISSED;
                 }
                 break;
@@ -148,80 +180,149 @@ public class Checkpoints {
     /**
      * Reset checkpoint data for a player.
      *
-     * @param player The player to reset.
+     * @param id The player's id.
      */
-    public void reset(BoatRacePlayer player) {
-        this.inPit.remove(player);
-        this.canPit.remove(player);
-        this.prevPositions.remove(player);
-        this.checkpoints.remove(player);
-        this.laps.remove(player);
-        this.began.remove(player);
+    public void reset(int id) {
+        this.inPit.clear(id);
+        this.canPit.clear(id);
+        this.hasPrevPosition.clear(id);
+        this.clearCheckpoint(id);
+        this.began.clear(id);
+
+        if (id < this.laps.length) {
+            this.laps[id] = 0;
+        }
     }
 
     /**
      * Restart a lap for a player.
      *
-     * @param player The player to restart.
+     * @param id The player's id.
      */
-    public void restart(BoatRacePlayer player) {
-        this.inPit.remove(player);
-        this.canPit.remove(player);
-        this.prevPositions.remove(player);
-        this.checkpoints.remove(player);
-        this.inRestart.add(player);
-        this.began.remove(player);
+    public void restart(int id) {
+        this.inPit.clear(id);
+        this.canPit.clear(id);
+        this.hasPrevPosition.clear(id);
+        this.clearCheckpoint(id);
+        this.inRestart.set(id);
+        this.began.clear(id);
     }
 
     /**
      * Get the last checkpoint the player used
      *
-     * @param player The player to get from.
+     * @param id The player's id.
      * @return The checkpoint region, empty if none found.
      */
-    public Optional<RespawnRegion> getCheckpoint(BoatRacePlayer player) {
-        return Optional.ofNullable(this.checkpoints.get(player))
-                .map(p -> p.getRight());
+    public Optional<RespawnRegion> getCheckpoint(int id) {
+        if (id >= this.checkpointRegions.length) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(this.checkpointRegions[id]);
     }
 
     /**
      * Get the last checkpoint's index the player used
      *
-     * @param player The player to get from.
+     * @param id The player's id.
      * @return The checkpoint region, empty if none found.
      */
-    public int getCheckpointIndex(BoatRacePlayer player) {
-        return Optional.ofNullable(this.checkpoints.get(player))
-                .map(p -> p.getLeft())
-                .orElse(-1);
+    public int getCheckpointIndex(int id) {
+        return id < this.checkpoints.length ? this.checkpoints[id] : -1;
+    }
+
+    /**
+     * Get where the checkpoint was crossed for the result of the last
+     * {@link #tick(ServerPlayerEntity, int)}, as a fraction of that tick's
+     * movement.
+     *
+     * @return The fraction from 0 (start of the tick) to 1 (end of the tick).
+     */
+    public double getCrossing() {
+        return this.crossing;
     }
 
     /**
      * Get the number of laps for a player.
      *
-     * @param player The player.
+     * @param id The player's id.
      * @return Their completed laps.
      */
-    public int getLaps(BoatRacePlayer player) {
-        return this.laps.getOrDefault(player, 0);
+    public int getLaps(int id) {
+        return id < this.laps.length ? this.laps[id] : 0;
+    }
+
+    /**
+     * Forget the last checkpoint a player used.
+     *
+     * @param id The player's id.
+     */
+    private void clearCheckpoint(int id) {
+        if (id < this.checkpoints.length) {
+            this.checkpoints[id] = -1;
+            this.checkpointRegions[id] = null;
+        }
     }
 
     /**
-     * Check if an entity's intersected any region bounds.
+     * Grow the per player arrays to fit an id.
      *
-     * @param regions The regions to test.
-     * @param pos     The entity's current pos.
-     * @param lastPos The entity's pos last tick.
-     * @return The region it intersected.
+     * @param id The player's id.
      */
-    private Optional<RespawnRegion> intersectAny(Set<RespawnRegion> regions, Vec3d pos, Vec3d lastPos) {
-        for (RespawnRegion region : regions) {
-            if (region.intersect(pos, lastPos)) {
-                return Optional.of(region);
+    private void ensureCapacity(int id) {
+        if (id < this.checkpoints.length) {
+            return;
+        }
+
+        int oldCapacity = this.checkpoints.length;
+        int capacity = Math.max(id + 1, oldCapacity * 2);
+
+        this.prevPositions = Arrays.copyOf(this.prevPositions, capacity * 3);
+        this.checkpoints = Arrays.copyOf(this.checkpoints, capacity);
+        this.checkpointRegions = Arrays.copyOf(this.checkpointRegions, capacity);
+        this.laps = Arrays.copyOf(this.laps, capacity);
+
+        Arrays.fill(this.checkpoints, oldCapacity, capacity, -1);
+    }
+
+    /**
+     * Check if this tick's movement intersected any region bounds in a group out
+     * of the candidates queried for this tick.
+     *
+     * @param group The group to test, a checkpoint index or pit lane.
+     * @return The entry it intersected, -1 if none.
+     */
+    private int intersectAny(int group) {
+        RegionIndex index = this.track.getRegionIndex();
+
+        for (int i = 0; i < this.candidates.size(); i++) {
+            int entry = this.candidates.getInt(i);
+
+            if (index.getGroup(entry) != group) {
+                continue;
+            }
+
+            double fraction = this.intersect(entry);
+            if (fraction >= 0.0) {
+                this.fraction = fraction;
+                return entry;
             }
         }
 
-        return Optional.empty();
+        return -1;
+    }
+
+    /**
+     * Check if this tick's movement intersected an entry's region bounds.
+     *
+     * @param entry The entry to test.
+     * @return The fraction along the movement it entered at, -1 if it didn't.
+     */
+    private double intersect(int entry) {
+        return this.track.getRegionIndex().getRegion(entry).intersect(
+                this.fromX, this.fromY, this.fromZ,
+                this.toX, this.toY, this.toZ);
     }
 
     public enum TickResult {
@@ -1,66 +1,126 @@
 package com.abaan404.boatrace.gameplay;
 
-import java.util.Map;
+import java.util.Arrays;
+import java.util.List;
 
 import org.joml.Vector3f;
 
-import com.abaan404.boatrace.BoatRacePlayer;
+import com.abaan404.boatrace.mixin.DisplayEntityInvoker;
 
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import net.minecraft.block.Blocks;
-import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
 import net.minecraft.entity.SpawnReason;
 import net.minecraft.entity.decoration.DisplayEntity;
+import net.minecraft.entity.player.PlayerPosition;
 import net.minecraft.entity.vehicle.VehicleEntity;
+import net.minecraft.network.packet.s2c.play.BundleS2CPacket;
+import net.minecraft.network.packet.s2c.play.EntitiesDestroyS2CPacket;
+import net.minecraft.network.packet.s2c.play.EntityPositionSyncS2CPacket;
+import net.minecraft.network.packet.s2c.play.EntitySpawnS2CPacket;
+import net.minecraft.network.packet.s2c.play.EntityTrackerUpdateS2CPacket;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.math.AffineTransformation;
+import net.minecraft.util.math.Vec3d;
 import xyz.nucleoid.plasmid.api.game.GameActivity;
 import xyz.nucleoid.plasmid.api.game.GameSpace;
 import xyz.nucleoid.plasmid.api.game.event.GameActivityEvents;
 
+/**
+ * Shows each rider where the server thinks their vehicle is. The indicator only
+ * exists on the rider's client, the server never adds it to the world and only
+ * sends its packets to the rider.
+ */
 public class DesyncIndicator {
+    // the client interpolates the indicator over this many ticks between updates
+    private static final int UPDATE_INTERVAL = 2;
+
     private final GameSpace gameSpace;
     private final ServerWorld world;
-    private final Map<BoatRacePlayer, Entity> indicator = new Object2ObjectOpenHashMap<>();
+    private final PlayerRegistry players;
+
+    private int ticks = 0;
+    private DisplayEntity.BlockDisplayEntity[] indicators = new DisplayEntity.BlockDisplayEntity[0];
+    private ServerPlayerEntity[] owners = new ServerPlayerEntity[0];
 
-    private DesyncIndicator(GameSpace gameSpace, ServerWorld world) {
+    private DesyncIndicator(GameSpace gameSpace, ServerWorld world, PlayerRegistry players) {
         this.gameSpace = gameSpace;
         this.world = world;
+        this.players = players;
     }
 
-    public static void addTo(GameActivity game, ServerWorld world) {
-        DesyncIndicator desyncIndicator = new DesyncIndicator(game.getGameSpace(), world);
+    public static void addTo(GameActivity game, ServerWorld world, PlayerRegistry players) {
+        DesyncIndicator desyncIndicator = new DesyncIndicator(game.getGameSpace(), world, players);
 
         game.listen(GameActivityEvents.TICK, desyncIndicator::onTick);
+        game.listen(GameActivityEvents.DISABLE, desyncIndicator::onDisable);
     }
 
     private void onTick() {
+        boolean update = ++this.ticks % UPDATE_INTERVAL == 0;
+
         for (ServerPlayerEntity player : this.gameSpace.getPlayers()) {
-            BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
+            int id = this.players.getId(player);
+
+            if (id >= this.indicators.length) {
+                int capacity = Math.max(id + 1, this.indicators.length * 2);
+                this.indicators = Arrays.copyOf(this.indicators, capacity);
+                this.owners = Arrays.copyOf(this.owners, capacity);
+            }
+
+            // rejoined players never saw the indicator spawned for their old connection
+            if (this.owners[id] != player) {
+                this.indicators[id] = null;
+                this.owners[id] = player;
+            }
+
+            DisplayEntity.BlockDisplayEntity indicator = this.indicators[id];
 
             // does not have a vehicle or vehicle is not a vehicle
             if (!player.hasVehicle() || !(player.getVehicle() instanceof VehicleEntity vehicle)) {
-                if (this.indicator.containsKey(bPlayer)) {
-                    this.despawnEntity(this.indicator.get(bPlayer));
-                    this.indicator.remove(bPlayer);
+                if (indicator != null) {
+                    player.networkHandler.sendPacket(new EntitiesDestroyS2CPacket(indicator.getId()));
+                    this.indicators[id] = null;
                 }
                 continue;
             }
 
-            if (!this.indicator.containsKey(bPlayer)) {
-                this.indicator.put(bPlayer, this.spawnEntity());
+            if (indicator == null) {
+                this.indicators[id] = this.spawnIndicator(player, vehicle.getPos());
+                continue;
+            }
+
+            if (!update || indicator.getPos().equals(vehicle.getPos())) {
+                continue;
             }
 
-            Entity entity = this.indicator.get(bPlayer);
-            entity.refreshPositionAndAngles(vehicle.getPos(), 0.0f, 0.0f);
+            indicator.setPosition(vehicle.getPos());
+            player.networkHandler.sendPacket(new EntityPositionSyncS2CPacket(indicator.getId(),
+                    new PlayerPosition(indicator.getPos(), Vec3d.ZERO, 0.0f, 0.0f), false));
         }
     }
 
-    private Entity spawnEntity() {
-        // use a lighting rod since it seems to be standard
+    private void onDisable() {
+        // the next activity may reuse this world, its players would keep seeing
+        // indicators nothing updates anymore
+        for (int id = 0; id < this.indicators.length; id++) {
+            DisplayEntity.BlockDisplayEntity indicator = this.indicators[id];
+            ServerPlayerEntity owner = this.owners[id];
+
+            if (indicator != null && !owner.isDisconnected()) {
+                owner.networkHandler.sendPacket(new EntitiesDestroyS2CPacket(indicator.getId()));
+            }
+        }
+
+        Arrays.fill(this.indicators, null);
+        Arrays.fill(this.owners, null);
+    }
+
+    private DisplayEntity.BlockDisplayEntity spawnIndicator(ServerPlayerEntity player, Vec3d pos) {
+        // only created for a fresh entity id and its tracked data, never spawned
         DisplayEntity.BlockDisplayEntity entity = EntityType.BLOCK_DISPLAY.create(this.world, SpawnReason.COMMAND);
+
+        // use a lighting rod since it seems to be standard
         AffineTransformation transformation = new AffineTransformation(
                 new Vector3f(-0.5f, 0.0f, -0.5f),
                 null,
@@ -69,14 +129,16 @@ public class DesyncIndicator {
 
         entity.setBlockState(Blocks.LIGHTNING_ROD.getDefaultState());
         entity.setTransformation(transformation);
+        ((DisplayEntityInvoker) entity).invokeSetTeleportDuration(UPDATE_INTERVAL);
+        entity.setPosition(pos);
 
-        this.world.spawnEntity(entity);
-        return entity;
-    }
+        // bundled like vanilla so the client never sees the indicator without its data
+        player.networkHandler.sendPacket(new BundleS2CPacket(List.of(
+                new EntitySpawnS2CPacket(entity.getId(), entity.getUuid(),
+                        pos.getX(), pos.getY(), pos.getZ(), 0.0f, 0.0f,
+                        entity.getType(), 0, Vec3d.ZERO, 0.0),
+                new EntityTrackerUpdateS2CPacket(entity.getId(), entity.getDataTracker().getChangedEntries()))));
 
-    private void despawnEntity(Entity entity) {
-        if (entity != null) {
-            entity.kill(this.world);
-        }
+        return entity;
     }
 }
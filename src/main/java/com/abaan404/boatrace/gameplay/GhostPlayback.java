@@ -0,0 +1,206 @@
+package com.abaan404.boatrace.gameplay;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.joml.Vector3f;
+
+import com.abaan404.boatrace.leaderboard.Ghost;
+import com.abaan404.boatrace.mixin.DisplayEntityInvoker;
+import com.abaan404.boatrace.mixin.ItemDisplayEntityInvoker;
+
+import net.minecraft.entity.EntityType;
+import net.minecraft.entity.SpawnReason;
+import net.minecraft.entity.decoration.DisplayEntity;
+import net.minecraft.entity.player.PlayerPosition;
+import net.minecraft.item.Items;
+import net.minecraft.network.packet.s2c.play.BundleS2CPacket;
+import net.minecraft.network.packet.s2c.play.EntitiesDestroyS2CPacket;
+import net.minecraft.network.packet.s2c.play.EntityPositionSyncS2CPacket;
+import net.minecraft.network.packet.s2c.play.EntitySpawnS2CPacket;
+import net.minecraft.network.packet.s2c.play.EntityTrackerUpdateS2CPacket;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.AffineTransformation;
+import net.minecraft.util.math.Vec3d;
+
+/**
+ * Plays a ghost back to a single player as they drive. The ghost only exists on
+ * that player's client, the server never adds it to the world and decodes one
+ * frame per tick as it goes.
+ */
+public class GhostPlayback {
+    // the client interpolates the ghost over this many ticks between updates
+    private static final int UPDATE_INTERVAL = 2;
+
+    private final ServerWorld world;
+
+    private Mode[] modes = new Mode[0];
+    private Ghost.Reader[] readers = new Ghost.Reader[0];
+    private DisplayEntity.ItemDisplayEntity[] ghosts = new DisplayEntity.ItemDisplayEntity[0];
+    private ServerPlayerEntity[] viewers = new ServerPlayerEntity[0];
+
+    public GhostPlayback(ServerWorld world) {
+        this.world = world;
+    }
+
+    /**
+     * Get which ghost the player races against.
+     *
+     * @param id The player's id.
+     * @return The mode.
+     */
+    public Mode getMode(int id) {
+        if (id >= this.modes.length || this.modes[id] == null) {
+            return Mode.PERSONAL_BEST;
+        }
+
+        return this.modes[id];
+    }
+
+    /**
+     * Switch to the next mode and stop the ghost being played, the new ghost
+     * appears from the player's next run.
+     *
+     * @param id The player's id.
+     * @return The new mode.
+     */
+    public Mode cycle(int id) {
+        Mode mode = Mode.values()[(this.getMode(id).ordinal() + 1) % Mode.values().length];
+
+        this.ensureCapacity(id);
+        this.modes[id] = mode;
+        this.stop(id);
+
+        return mode;
+    }
+
+    /**
+     * Play a ghost from its first frame, replacing any ghost being played.
+     *
+     * @param player The player to show it to.
+     * @param id     The player's id.
+     * @param ghost  The ghost.
+     */
+    public void start(ServerPlayerEntity player, int id, Ghost ghost) {
+        this.stop(id);
+
+        Ghost.Reader reader = ghost.read();
+        if (!reader.next()) {
+            return;
+        }
+
+        this.readers[id] = reader;
+        this.ghosts[id] = this.spawnGhost(player, new Vec3d(reader.getX(), reader.getY(), reader.getZ()),
+                reader.getYaw());
+        this.viewers[id] = player;
+    }
+
+    /**
+     * Stop playing and remove the player's ghost.
+     *
+     * @param id The player's id.
+     */
+    public void stop(int id) {
+        this.ensureCapacity(id);
+
+        DisplayEntity.ItemDisplayEntity ghost = this.ghosts[id];
+        ServerPlayerEntity viewer = this.viewers[id];
+
+        if (ghost != null && !viewer.isDisconnected()) {
+            viewer.networkHandler.sendPacket(new EntitiesDestroyS2CPacket(ghost.getId()));
+        }
+
+        this.readers[id] = null;
+        this.ghosts[id] = null;
+        this.viewers[id] = null;
+    }
+
+    /**
+     * Advance the player's ghost by a frame, call once per tick.
+     *
+     * @param id The player's id.
+     */
+    public void tick(int id) {
+        if (id >= this.readers.length || this.readers[id] == null) {
+            return;
+        }
+
+        Ghost.Reader reader = this.readers[id];
+
+        // the ghost crossed the line
+        if (!reader.next()) {
+            this.stop(id);
+            return;
+        }
+
+        if (reader.getFrame() % UPDATE_INTERVAL != 0) {
+            return;
+        }
+
+        DisplayEntity.ItemDisplayEntity ghost = this.ghosts[id];
+        ghost.setPosition(reader.getX(), reader.getY(), reader.getZ());
+        ghost.setYaw(reader.getYaw());
+
+        this.viewers[id].networkHandler.sendPacket(new EntityPositionSyncS2CPacket(ghost.getId(),
+                new PlayerPosition(ghost.getPos(), Vec3d.ZERO, ghost.getYaw(), 0.0f), false));
+    }
+
+    private DisplayEntity.ItemDisplayEntity spawnGhost(ServerPlayerEntity player, Vec3d pos, float yaw) {
+        // only created for a fresh entity id and its tracked data, never spawned
+        DisplayEntity.ItemDisplayEntity entity = EntityType.ITEM_DISPLAY.create(this.world, SpawnReason.COMMAND);
+
+        // displays cannot be see through, glow so the ghost reads as one. the boat
+        // faces the way it was driven, so it faces a player chasing it
+        AffineTransformation transformation = new AffineTransformation(
+                new Vector3f(0.0f, 0.5f, 0.0f),
+                null,
+                new Vector3f(1.25f, 1.25f, 1.25f),
+                null);
+
+        ((ItemDisplayEntityInvoker) entity).invokeSetItemStack(Items.OAK_BOAT.getDefaultStack());
+        ((DisplayEntityInvoker) entity).invokeSetTeleportDuration(UPDATE_INTERVAL);
+        entity.setTransformation(transformation);
+        entity.setGlowing(true);
+        entity.setPosition(pos);
+        entity.setYaw(yaw);
+
+        // bundled like vanilla so the client never sees the ghost without its data
+        player.networkHandler.sendPacket(new BundleS2CPacket(List.of(
+                new EntitySpawnS2CPacket(entity.getId(), entity.getUuid(),
+                        pos.getX(), pos.getY(), pos.getZ(), 0.0f, yaw,
+                        entity.getType(), 0, Vec3d.ZERO, 0.0),
+                new EntityTrackerUpdateS2CPacket(entity.getId(), entity.getDataTracker().getChangedEntries()))));
+
+        return entity;
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < this.readers.length) {
+            return;
+        }
+
+        int capacity = Math.max(id + 1, this.readers.length * 2);
+        this.modes = Arrays.copyOf(this.modes, capacity);
+        this.readers = Arrays.copyOf(this.readers, capacity);
+        this.ghosts = Arrays.copyOf(this.ghosts, capacity);
+        this.viewers = Arrays.copyOf(this.viewers, capacity);
+    }
+
+    public enum Mode {
+        /**
+         * No ghost.
+         */
+        OFF,
+
+        /**
+         * The player's own personal best.
+         */
+        PERSONAL_BEST,
+
+        /**
+         * The fastest time on the track.
+         */
+        RECORD;
+    }
+}
@@ -0,0 +1,75 @@
+package com.abaan404.boatrace.gameplay;
+
+import java.util.Arrays;
+
+import com.abaan404.boatrace.leaderboard.Ghost;
+
+import net.minecraft.entity.Entity;
+
+/**
+ * Records a ghost of each player's current run, one frame per tick.
+ */
+public class GhostRecorder {
+    // runs longer than half an hour are dropped instead of growing forever
+    private static final int MAX_FRAMES = 20 * 60 * 30;
+
+    private Ghost.Writer[] writers = new Ghost.Writer[0];
+
+    /**
+     * Start recording a new run, discarding any run in progress.
+     *
+     * @param id The player's id.
+     */
+    public void start(int id) {
+        if (id >= this.writers.length) {
+            this.writers = Arrays.copyOf(this.writers, Math.max(id + 1, this.writers.length * 2));
+        }
+
+        this.writers[id] = new Ghost.Writer();
+    }
+
+    /**
+     * Stop recording a player's run and discard it.
+     *
+     * @param id The player's id.
+     */
+    public void stop(int id) {
+        if (id < this.writers.length) {
+            this.writers[id] = null;
+        }
+    }
+
+    /**
+     * Record a frame of a player's run, does nothing if they aren't recording.
+     *
+     * @param id     The player's id.
+     * @param entity What the player is riding, or the player if nothing.
+     */
+    public void record(int id, Entity entity) {
+        if (id >= this.writers.length || this.writers[id] == null) {
+            return;
+        }
+
+        Ghost.Writer writer = this.writers[id];
+        if (writer.getFrames() >= MAX_FRAMES) {
+            this.writers[id] = null;
+            return;
+        }
+
+        writer.write(entity.getX(), entity.getY(), entity.getZ(), entity.getYaw());
+    }
+
+    /**
+     * Get a ghost of everything recorded in a player's run so far.
+     *
+     * @param id The player's id.
+     * @return The ghost, empty if they aren't recording.
+     */
+    public Ghost finish(int id) {
+        if (id >= this.writers.length || this.writers[id] == null) {
+            return Ghost.EMPTY;
+        }
+
+        return this.writers[id].toGhost();
+    }
+}
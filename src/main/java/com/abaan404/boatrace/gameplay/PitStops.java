@@ -1,59 +1,58 @@
 package com.abaan404.boatrace.gameplay;
 
-import java.util.Map;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.BitSet;
 
-import com.abaan404.boatrace.BoatRacePlayer;
 import com.abaan404.boatrace.screen.PitBoxGui;
 
-import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
-import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import net.minecraft.server.network.ServerPlayerEntity;
 
 public class PitStops {
-    private Set<BoatRacePlayer> inPit = new ObjectOpenHashSet<>();
-    private Map<BoatRacePlayer, Integer> pitCount = new Object2IntOpenHashMap<>();
+    private BitSet inPit = new BitSet();
+    private int[] pitCount = new int[0];
+    private int revision = 0;
 
     /**
      * Start a pitstop.
      *
      * @param player The player.
+     * @param id     The player's id.
      */
-    public void startPit(ServerPlayerEntity player) {
-        BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
-
-        if (!this.inPit.contains(bPlayer)) {
+    public void startPit(ServerPlayerEntity player, int id) {
+        if (!this.inPit.get(id)) {
             PitBoxGui gui = new PitBoxGui(player);
             gui.open();
 
-            this.inPit.add(bPlayer);
+            this.inPit.set(id);
         }
     }
 
     /**
      * Stop a pitstop. Will not update this player's pit count.
      *
-     * @param player The player.
+     * @param id The player's id.
      */
-    public void stopPit(ServerPlayerEntity player) {
-        BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
-        this.inPit.remove(bPlayer);
+    public void stopPit(int id) {
+        this.inPit.clear(id);
     }
 
     /**
      * Finish a pitstop and increment the pit counter.
      *
-     * @param player The player.
+     * @param id The player's id.
      */
-    public boolean finishPit(ServerPlayerEntity player) {
-        BoatRacePlayer bPlayer = BoatRacePlayer.of(player);
-
-        if (!this.inPit.contains(bPlayer)) {
+    public boolean finishPit(int id) {
+        if (!this.inPit.get(id)) {
             return false;
         }
 
-        this.pitCount.put(bPlayer, this.pitCount.getOrDefault(bPlayer, 0) + 1);
-        this.inPit.remove(bPlayer);
+        if (id >= this.pitCount.length) {
+            this.pitCount = Arrays.copyOf(this.pitCount, Math.max(id + 1, this.pitCount.length * 2));
+        }
+
+        this.pitCount[id]++;
+        this.inPit.clear(id);
+        this.revision++;
 
         return true;
     }
@@ -61,20 +60,33 @@ public class PitStops {
     /**
      * Reset state for this player.
      *
-     * @param player The player.
+     * @param id The player's id.
      */
-    public void reset(BoatRacePlayer player) {
-        this.inPit.remove(player);
-        this.pitCount.remove(player);
+    public void reset(int id) {
+        this.inPit.clear(id);
+
+        if (id < this.pitCount.length && this.pitCount[id] != 0) {
+            this.pitCount[id] = 0;
+            this.revision++;
+        }
     }
 
     /**
      * Get the number of completed pits for this player.
      *
-     * @param player The player.
+     * @param id The player's id.
      * @return Their pit count.
      */
-    public int getPits(BoatRacePlayer player) {
-        return this.pitCount.getOrDefault(player, 0);
+    public int getPits(int id) {
+        return id < this.pitCount.length ? this.pitCount[id] : 0;
+    }
+
+    /**
+     * Get a counter that changes whenever any player's pit count changes.
+     *
+     * @return The revision.
+     */
+    public int getRevision() {
+        return this.revision;
     }
 }
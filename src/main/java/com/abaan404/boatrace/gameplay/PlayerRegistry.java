@@ -0,0 +1,79 @@
+package com.abaan404.boatrace.gameplay;
+
+import java.util.List;
+import java.util.UUID;
+
+import com.abaan404.boatrace.BoatRacePlayer;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.entity.player.PlayerEntity;
+
+/**
+ * Assigns every player seen by a game space a small id that stays the same for
+ * as long as the game space is open. Gameplay state is stored in arrays indexed
+ * by these ids.
+ */
+public class PlayerRegistry {
+    private final Object2IntOpenHashMap<UUID> ids = new Object2IntOpenHashMap<>();
+    private final List<BoatRacePlayer> players = new ObjectArrayList<>();
+
+    public PlayerRegistry() {
+        this.ids.defaultReturnValue(-1);
+    }
+
+    /**
+     * Get the id for a player, registering them if they haven't been seen yet.
+     *
+     * @param player The player.
+     * @return Their id.
+     */
+    public int getId(BoatRacePlayer player) {
+        UUID uuid = player.ref().id();
+
+        int id = this.ids.getInt(uuid);
+        if (id >= 0) {
+            return id;
+        }
+
+        id = this.players.size();
+        this.players.add(player);
+        this.ids.put(uuid, id);
+
+        return id;
+    }
+
+    /**
+     * Get the id for a player, registering them if they haven't been seen yet.
+     *
+     * @param player The player.
+     * @return Their id.
+     */
+    public int getId(PlayerEntity player) {
+        int id = this.ids.getInt(player.getUuid());
+        if (id >= 0) {
+            return id;
+        }
+
+        return this.getId(BoatRacePlayer.of(player));
+    }
+
+    /**
+     * Get the player registered to an id.
+     *
+     * @param id The id.
+     * @return The player.
+     */
+    public BoatRacePlayer getPlayer(int id) {
+        return this.players.get(id);
+    }
+
+    /**
+     * Get the number of registered players, every id is below this.
+     *
+     * @return The number of players.
+     */
+    public int size() {
+        return this.players.size();
+    }
+}
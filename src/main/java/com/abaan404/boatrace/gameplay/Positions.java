@@ -1,108 +1,132 @@
 package com.abaan404.boatrace.gameplay;
 
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.BitSet;
 
-import com.abaan404.boatrace.BoatRacePlayer;
+import com.abaan404.boatrace.BoatRaceTrack;
 
-import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
-import it.unimi.dsi.fastutil.objects.ObjectArrayList;
-import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntLists;
 import net.minecraft.server.world.ServerWorld;
 
 /**
  * Keeps track of positions and delta times on track.
  */
 public class Positions {
-    private final Splits splits = new Splits();
+    private final Splits splits;
 
-    private Map<BoatRacePlayer, Integer> playerToPositions = new Object2IntOpenHashMap<>();
-    private List<BoatRacePlayer> positions = new ObjectArrayList<>();
-    private Set<BoatRacePlayer> waiting = new ObjectOpenHashSet<>();
+    private int[] playerToPositions = new int[0];
+    private IntArrayList positions = new IntArrayList();
+    private IntList positionsView = IntLists.unmodifiable(this.positions);
+    private BitSet waiting = new BitSet();
+    private int ranked = 0;
+    private int revision = 0;
+
+    public Positions(BoatRaceTrack track) {
+        this(new Splits(track));
+    }
+
+    Positions(Splits splits) {
+        this.splits = splits;
+    }
 
     /**
      * Update the current positions according to the internal SplitsManager state.
      * The player being updated will also be removed from their waiting state.
+     * Only the updated player moves, every other player keeps their order.
      *
-     * @param player The player being updated.
-     * @param splits The split manager.
+     * @param world    The world to fetch mspt from.
+     * @param id       The id of the player being updated.
+     * @param crossing The fraction of the last tick's movement where the player
+     *                 crossed the checkpoint.
      */
-    public void update(BoatRacePlayer player) {
-        this.waiting.remove(player);
-        this.splits.recordSplit(player);
+    public void update(ServerWorld world, int id, double crossing) {
+        this.splits.recordSplit(world, id, crossing);
+        this.reposition(id);
+    }
 
-        // divide players into those who had update() called for and those who hadn't.
-        List<BoatRacePlayer> positions = new ObjectArrayList<>();
-        List<BoatRacePlayer> waiting = new ObjectArrayList<>();
+    /**
+     * Update the current positions after recording a split at a time on the
+     * player's timer.
+     *
+     * @param id    The id of the player being updated.
+     * @param split The split time.
+     */
+    void update(int id, long split) {
+        this.splits.recordSplit(id, split);
+        this.reposition(id);
+    }
 
-        for (BoatRacePlayer bPlayer : this.positions) {
-            if (!this.waiting.contains(bPlayer)) {
-                positions.add(bPlayer);
-            } else {
-                waiting.add(bPlayer);
-            }
+    /**
+     * Move a player who recorded a split to their new position.
+     *
+     * @param id The player's id.
+     */
+    private void reposition(int id) {
+        int from = this.getPosition(id);
+        if (from < 0) {
+            return;
         }
 
-        // sort them by checkpoints completed or their delta
-        positions.sort((a, b) -> {
-            List<Long> aSplits = this.splits.getSplits(a);
-            List<Long> bSplits = this.splits.getSplits(b);
-
-            if (aSplits.size() != bSplits.size()) {
-                return Integer.compare(bSplits.size(), aSplits.size());
-            }
-
-            long aTime = aSplits.isEmpty() ? Long.MAX_VALUE : aSplits.getLast();
-            long bTime = bSplits.isEmpty() ? Long.MAX_VALUE : bSplits.getLast();
+        this.positions.removeInt(from);
 
-            return Long.compare(aTime, bTime);
-        });
-
-        // append waiting players to the back
-        for (BoatRacePlayer bPlayer : waiting) {
-            positions.add(bPlayer);
+        if (this.waiting.get(id)) {
+            this.waiting.clear(id);
+            this.ranked++;
         }
 
-        this.positions = positions;
+        // find where they go among the players who had update() called for. among
+        // anyone on the same split they keep the order they had, like a stable sort
+        int tiesStart = this.search(id, this.ranked - 1, true);
+        int tiesEnd = this.search(id, this.ranked - 1, false);
+        int to = Math.max(tiesStart, Math.min(from, tiesEnd));
 
-        // update cache
-        this.playerToPositions.clear();
-        for (int i = 0; i < this.positions.size(); i++) {
-            this.playerToPositions.put(this.positions.get(i), i);
-        }
+        this.positions.add(to, id);
+        this.updateCache(Math.min(from, to), Math.max(from, to) + 1);
+        this.revision++;
     }
 
     /**
      * Add a player to being tracked.
      *
-     * @param player The player to track.
+     * @param id The id of the player to track.
      */
-    public void add(BoatRacePlayer player) {
-        this.positions.add(player);
-        this.waiting.add(player);
-
-        this.playerToPositions.clear();
-        for (int i = 0; i < this.positions.size(); i++) {
-            this.playerToPositions.put(this.positions.get(i), i);
+    public void add(int id) {
+        if (this.getPosition(id) >= 0) {
+            return;
         }
+
+        this.positions.add(id);
+        this.waiting.set(id);
+
+        this.updateCache(this.positions.size() - 1, this.positions.size());
+        this.revision++;
     }
 
     /**
      * Remove a player from being tracked.
      *
-     * @param player The player to erase.
+     * @param id The id of the player to erase.
      */
-    public void remove(BoatRacePlayer player) {
-        this.positions.removeIf(a -> a.equals(player));
-        this.waiting.remove(player);
-        this.splits.stop(player);
+    public void remove(int id) {
+        this.splits.stop(id);
 
-        this.playerToPositions.clear();
-        for (int i = 0; i < this.positions.size(); i++) {
-            this.playerToPositions.put(this.positions.get(i), i);
+        int from = this.getPosition(id);
+        if (from < 0) {
+            return;
         }
+
+        this.positions.removeInt(from);
+        this.playerToPositions[id] = -1;
+
+        if (!this.waiting.get(id)) {
+            this.ranked--;
+        }
+
+        this.waiting.clear(id);
+        this.updateCache(from, this.positions.size());
+        this.revision++;
     }
 
     /**
@@ -115,46 +139,43 @@ public class Positions {
     /**
      * Begin the internal timer for this player.
      *
-     * @param player The player.
+     * @param id The player's id.
      */
-    public void run(BoatRacePlayer player) {
-        this.splits.run(player);
+    public void run(int id) {
+        this.splits.run(id);
     }
 
     /**
      * Stop the internal timer for this player.
      *
-     * @param player The player.
+     * @param id The player's id.
      */
-    public void stop(BoatRacePlayer player) {
-        this.splits.stop(player);
+    public void stop(int id) {
+        this.splits.stop(id);
     }
 
     /**
      * Get the internal timer for this player.
      *
-     * @param player The player.
+     * @param id The player's id.
      * @return Their timer.
      */
-    public long getTimer(BoatRacePlayer player) {
-        return this.splits.getTimer(player);
+    public long getTimer(int id) {
+        return this.splits.getTimer(id);
     }
 
     /**
      * Get the total delta against another player.
      *
-     * @param player1 The player to compare for.
-     * @param player2 The player compared against.
+     * @param id1 The id of the player to compare for.
+     * @param id2 The id of the player compared against.
      * @return The total delta at a common checkpoint.
      */
-    public long getDelta(BoatRacePlayer player1, BoatRacePlayer player2) {
-        List<Long> splits1 = this.splits.getSplits(player1);
-        List<Long> splits2 = this.splits.getSplits(player2);
+    public long getDelta(int id1, int id2) {
+        int splitIdx = this.getCommonSplit(id1, id2);
 
-        int splitIdx = Math.max(0, Math.min(splits1.size() - 1, splits2.size() - 1));
-
-        long split1 = splits1.get(splitIdx);
-        long split2 = splits2.get(splitIdx);
+        long split1 = this.splits.getSplit(id1, splitIdx);
+        long split2 = this.splits.getSplit(id2, splitIdx);
 
         return split1 - split2;
     }
@@ -162,19 +183,16 @@ public class Positions {
     /**
      * Get the delta against another player at a checkpoint.
      *
-     * @param player1 The player to compare for.
-     * @param player2 The player compared against.
+     * @param id1 The id of the player to compare for.
+     * @param id2 The id of the player compared against.
      * @return The delta at a common checkpoint.
      */
-    public long getDeltaCheckpoint(BoatRacePlayer player1, BoatRacePlayer player2) {
-        List<Long> splits1 = this.splits.getSplits(player1);
-        List<Long> splits2 = this.splits.getSplits(player2);
-
-        int splitIdx = Math.max(0, Math.min(splits1.size() - 1, splits2.size() - 1));
+    public long getDeltaCheckpoint(int id1, int id2) {
+        int splitIdx = this.getCommonSplit(id1, id2);
         int splitIdxPrev = Math.max(0, splitIdx - 1);
 
-        long split1 = splits1.get(splitIdx) - splits1.get(splitIdxPrev);
-        long split2 = splits2.get(splitIdx) - splits2.get(splitIdxPrev);
+        long split1 = this.splits.getSplit(id1, splitIdx) - this.splits.getSplit(id1, splitIdxPrev);
+        long split2 = this.splits.getSplit(id2, splitIdx) - this.splits.getSplit(id2, splitIdxPrev);
 
         return split1 - split2;
     }
@@ -182,19 +200,110 @@ public class Positions {
     /**
      * Get the lap position for this player.
      *
-     * @param player The player.
+     * @param id The player's id.
      * @return Their position.
      */
-    public int getPosition(BoatRacePlayer player) {
-        return this.playerToPositions.getOrDefault(player, -1);
+    public int getPosition(int id) {
+        return id < this.playerToPositions.length ? this.playerToPositions[id] : -1;
     }
 
     /**
      * Get a ordered list of track positions.
      *
-     * @return A list of players sorted to their lap positions.
+     * @return A list of player ids sorted to their lap positions.
+     */
+    public IntList getPositions() {
+        return this.positionsView;
+    }
+
+    /**
+     * Get a counter that changes whenever positions or deltas may have changed.
+     *
+     * @return The revision.
+     */
+    public int getRevision() {
+        return this.revision;
+    }
+
+    /**
+     * Binary search the first ranked player not ahead of, or behind, a player.
+     *
+     * @param id     The player's id, not in the positions.
+     * @param end    The number of ranked players to search.
+     * @param before Find the first player with the same split instead of the
+     *               first player behind.
+     * @return The position.
+     */
+    private int search(int id, int end, boolean before) {
+        int low = 0;
+        int high = end;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = this.compare(id, this.positions.getInt(mid));
+
+            if (cmp < 0 || (before && cmp == 0)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Get the latest split index both players have recorded.
+     *
+     * @param id1 The first player's id.
+     * @param id2 The second player's id.
+     * @return The common split index.
+     */
+    private int getCommonSplit(int id1, int id2) {
+        int count = Math.min(this.splits.getSplitCount(id1), this.splits.getSplitCount(id2));
+        return Math.max(0, count - 1);
+    }
+
+    /**
+     * Compare two players by checkpoints completed then by their latest split.
+     *
+     * @param id1 The first player's id.
+     * @param id2 The second player's id.
+     * @return The comparison, negative if the first player is ahead.
      */
-    public List<BoatRacePlayer> getPositions() {
-        return Collections.unmodifiableList(this.positions);
+    private int compare(int id1, int id2) {
+        int count1 = this.splits.getSplitCount(id1);
+        int count2 = this.splits.getSplitCount(id2);
+
+        if (count1 != count2) {
+            return Integer.compare(count2, count1);
+        }
+
+        long time1 = count1 == 0 ? Long.MAX_VALUE : this.splits.getLastSplit(id1);
+        long time2 = count2 == 0 ? Long.MAX_VALUE : this.splits.getLastSplit(id2);
+
+        return Long.compare(time1, time2);
+    }
+
+    /**
+     * Update the player to position lookup for a range of positions.
+     *
+     * @param from The first position to update.
+     * @param to   The position after the last one to update.
+     */
+    private void updateCache(int from, int to) {
+        for (int i = from; i < to; i++) {
+            int id = this.positions.getInt(i);
+
+            if (id >= this.playerToPositions.length) {
+                int capacity = Math.max(id + 1, this.playerToPositions.length * 2);
+                int oldCapacity = this.playerToPositions.length;
+
+                this.playerToPositions = Arrays.copyOf(this.playerToPositions, capacity);
+                Arrays.fill(this.playerToPositions, oldCapacity, capacity, -1);
+            }
+
+            this.playerToPositions[id] = i;
+        }
     }
 }
@@ -1,20 +1,31 @@
 package com.abaan404.boatrace.gameplay;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
 import com.abaan404.boatrace.BoatRaceTrack;
 
-import net.minecraft.entity.AreaEffectCloudEntity;
+import net.fabricmc.fabric.api.networking.v1.EntityTrackingEvents;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
 import net.minecraft.entity.SpawnReason;
+import net.minecraft.entity.decoration.DisplayEntity;
 import net.minecraft.entity.player.PlayerPosition;
 import net.minecraft.entity.vehicle.BoatEntity;
-import net.minecraft.particle.ParticleTypes;
+import net.minecraft.network.packet.Packet;
+import net.minecraft.network.packet.s2c.play.BundleS2CPacket;
+import net.minecraft.network.packet.s2c.play.EntitiesDestroyS2CPacket;
+import net.minecraft.network.packet.s2c.play.EntityPassengersSetS2CPacket;
+import net.minecraft.network.packet.s2c.play.EntitySpawnS2CPacket;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.GameMode;
 
@@ -23,9 +34,49 @@ import net.minecraft.world.GameMode;
  */
 public class SpawnLogic {
     private final ServerWorld world;
+    private final BoatRaceTrack track;
+    private final BoatPool boats;
+    private final Set<Entity> anchors = new ReferenceOpenHashSet<>();
+    private final LongSet chunks = new LongOpenHashSet();
 
-    public SpawnLogic(ServerWorld world) {
+    public SpawnLogic(ServerWorld world, BoatRaceTrack track) {
         this.world = world;
+        this.track = track;
+        this.boats = new BoatPool(world);
+
+        // keep every spawn point loaded so a respawn never waits on a chunk, the
+        // ticket only queues the chunk so opening the game doesn't block on it
+        for (Vec3d spawnPoint : track.getSpawnPoints()) {
+            ChunkPos chunk = new ChunkPos(BlockPos.ofFloored(spawnPoint));
+            if (this.chunks.add(chunk.toLong())) {
+                world.getChunkManager().addTicket(TrackPreloader.TICKET, chunk, 0);
+            }
+        }
+    }
+
+    public static void initialize() {
+        // anchors are never tracked, so send one to whoever starts tracking a boat riding it
+        EntityTrackingEvents.START_TRACKING.register((entity, player) -> {
+            Entity vehicle = entity.getVehicle();
+
+            if (vehicle instanceof DisplayEntity.BlockDisplayEntity
+                    && ((ServerWorld) vehicle.getWorld()).getEntity(vehicle.getUuid()) == null) {
+                player.networkHandler.sendPacket(new BundleS2CPacket(List.of(
+                        SpawnLogic.createSpawnPacket(vehicle),
+                        new EntityPassengersSetS2CPacket(vehicle))));
+            }
+        });
+    }
+
+    /**
+     * Tick whatever the world won't, call once per tick.
+     */
+    public void tick() {
+        // the world skips entities riding something and anchors aren't in it, copied
+        // since a ticking rider may be despawned along with their anchor
+        for (Entity anchor : List.copyOf(this.anchors)) {
+            this.world.tickEntity(anchor);
+        }
     }
 
     /**
@@ -46,20 +97,14 @@ public class SpawnLogic {
      * @return The boat entity spawned.
      */
     public Optional<BoatEntity> spawnVehicleAndRide(Entity entity) {
-        BoatEntity boat = EntityType.OAK_BOAT.create(this.world, SpawnReason.COMMAND);
-        if (boat == null) {
-            return Optional.empty();
-        }
-
-        boat.refreshPositionAndAngles(entity.getPos(), entity.getYaw(), entity.getPitch());
-        this.world.spawnEntity(boat);
-        entity.startRiding(boat, true);
-        return Optional.of(boat);
+        Optional<BoatEntity> boat = this.boats.acquire(entity.getPos(), entity.getYaw(), entity.getPitch());
+        boat.ifPresent(vehicle -> entity.startRiding(vehicle, true));
+        return boat;
     }
 
     /**
-     * Unmount and kill the vehicle the entity is riding and all further ridden
-     * entities.
+     * Unmount and despawn the vehicle the entity is riding and all further ridden
+     * entities. Boats are returned to the pool, anything else is killed.
      *
      * @param entity The entity to dismount.
      */
@@ -69,10 +114,35 @@ public class SpawnLogic {
             this.despawnVehicle(vehicle);
 
             vehicle.stopRiding();
-            vehicle.kill(this.world);
+
+            if (vehicle instanceof BoatEntity boat) {
+                this.boats.release(boat);
+            } else if (this.anchors.remove(vehicle)) {
+                // the anchor only exists on clients, removing it there dismounts the boat
+                vehicle.removeAllPassengers();
+                this.sendToWorld(new EntitiesDestroyS2CPacket(vehicle.getId()));
+            } else {
+                vehicle.kill(this.world);
+            }
         }
     }
 
+    /**
+     * Kill every pooled boat and let go of the spawn point chunks, call when the
+     * game this belongs to ends.
+     *
+     * @return The pool's final metrics.
+     */
+    public BoatPool.Metrics close() {
+        for (LongIterator it = this.chunks.iterator(); it.hasNext();) {
+            this.world.getChunkManager().removeTicket(TrackPreloader.TICKET, new ChunkPos(it.nextLong()), 0);
+        }
+
+        this.chunks.clear();
+        this.boats.clear();
+        return this.boats.getMetrics();
+    }
+
     /**
      * Spawn a player in the world on a solid block within a respawn region.
      *
@@ -80,35 +150,20 @@ public class SpawnLogic {
      * @param respawn The region to spawn in.
      */
     public void spawnPlayer(ServerPlayerEntity player, BoatRaceTrack.RespawnRegion respawn) {
-        BlockPos center = BlockPos.ofFloored(respawn.bounds().center());
-        BlockPos spawn = center;
-
-        // find a solid ground from the center
-        boolean solidBlockFound = false;
-        while (spawn.getY() >= respawn.bounds().min().getY()) {
-            if (!this.world.getBlockState(spawn.down()).isAir()) {
-                solidBlockFound = true;
-                break;
-            }
-            spawn = spawn.down();
-        }
-
-        if (!solidBlockFound) {
-            spawn = center;
-        }
-
         // avoid accidental stray boats
         this.despawnVehicle(player);
 
         player.networkHandler.requestTeleport(new PlayerPosition(
-                spawn.toBottomCenterPos(),
+                this.track.getSpawnPoint(respawn),
                 Vec3d.ZERO,
                 respawn.yaw(),
                 respawn.pitch()), Set.of());
     }
 
     /**
-     * Freeze the vehicle by making it ride an entity.
+     * Freeze the vehicle by making it ride an anchor. The anchor is never added to
+     * the world and clients are only sent the packets needed to show the boat
+     * riding it, {@link #tick()} ticks the boat and its rider in its place.
      *
      * @param player The player's boat to freeze.
      * @return The entity the boat is now riding.
@@ -123,21 +178,24 @@ public class SpawnLogic {
             return Optional.of(boat.getVehicle());
         }
 
-        AreaEffectCloudEntity aec = EntityType.AREA_EFFECT_CLOUD.create(this.world, SpawnReason.COMMAND);
-        if (aec == null) {
+        // only created for a fresh entity id, an empty block display shows nothing
+        DisplayEntity.BlockDisplayEntity anchor = EntityType.BLOCK_DISPLAY.create(this.world, SpawnReason.COMMAND);
+        if (anchor == null) {
             return Optional.empty();
         }
 
-        aec.setParticleType(ParticleTypes.DUST_PLUME); // why not
-        aec.setRadius(1.0f);
-        aec.refreshPositionAndAngles(player.getPos(), player.getYaw(), player.getPitch());
-        this.world.spawnEntity(aec);
-        boat.startRiding(aec);
-        return Optional.of(aec);
+        anchor.refreshPositionAndAngles(boat.getPos(), 0.0f, 0.0f);
+        boat.startRiding(anchor, true);
+        this.anchors.add(anchor);
+
+        this.sendToWorld(new BundleS2CPacket(List.of(
+                SpawnLogic.createSpawnPacket(anchor),
+                new EntityPassengersSetS2CPacket(anchor))));
+        return Optional.of(anchor);
     }
 
     /**
-     * Unfreeze the vehicle by killing the entity its riding.
+     * Unfreeze the vehicle by removing the anchor its riding.
      *
      * @param player THe player's boat to unfreeze.
      */
@@ -149,4 +207,25 @@ public class SpawnLogic {
 
         this.despawnVehicle(boat);
     }
+
+    /**
+     * Create the packet spawning an anchor on a client.
+     *
+     * @param anchor The anchor.
+     * @return The spawn packet.
+     */
+    private static EntitySpawnS2CPacket createSpawnPacket(Entity anchor) {
+        return new EntitySpawnS2CPacket(anchor.getId(), anchor.getUuid(),
+                anchor.getX(), anchor.getY(), anchor.getZ(), 0.0f, 0.0f,
+                anchor.getType(), 0, Vec3d.ZERO, 0.0);
+    }
+
+    /**
+     * Send a packet to everyone in this world.
+     *
+     * @param packet The packet.
+     */
+    private void sendToWorld(Packet<?> packet) {
+        this.world.getServer().getPlayerManager().sendToDimension(packet, this.world.getRegistryKey());
+    }
 }
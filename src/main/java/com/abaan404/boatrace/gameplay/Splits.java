@@ -1,43 +1,52 @@
 package com.abaan404.boatrace.gameplay;
 
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.BitSet;
 
-import com.abaan404.boatrace.BoatRacePlayer;
+import com.abaan404.boatrace.BoatRaceTrack;
 
 import it.unimi.dsi.fastutil.longs.LongArrayList;
-import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.MathHelper;
 
 /**
  * Records splits and times an active run.
  */
 public class Splits {
-    private Set<BoatRacePlayer> running = new ObjectOpenHashSet<>();
+    private final int splitCapacity;
 
-    private Map<BoatRacePlayer, Long> timer = new Object2LongOpenHashMap<>();
-    private Map<BoatRacePlayer, List<Long>> splits = new Object2ObjectOpenHashMap<>();
+    private BitSet running = new BitSet();
+    private long[] timers = new long[0];
+    private long[][] splits = new long[0][];
+    private int[] splitCounts = new int[0];
+
+    public Splits(BoatRaceTrack track) {
+        // a start split and one for every checkpoint after, the start of a
+        // circular track is crossed again to end the lap
+        this(track.getRegions().checkpoints().size() + 1);
+    }
+
+    Splits(int splitCapacity) {
+        this.splitCapacity = splitCapacity;
+    }
 
     /**
      * Continuously run the timer for this player.
      *
-     * @param player The player.
+     * @param id The player's id.
      */
-    public void run(BoatRacePlayer player) {
-        this.running.add(player);
+    public void run(int id) {
+        this.ensureCapacity(id);
+        this.running.set(id);
     }
 
     /**
      * Stop running the timer for this player.
      *
-     * @param player The player.
+     * @param id The player's id.
      */
-    public void stop(BoatRacePlayer player) {
-        this.running.remove(player);
+    public void stop(int id) {
+        this.running.clear(id);
     }
 
     /**
@@ -46,68 +55,189 @@ public class Splits {
      * @param world The world to fetch mspt from.
      */
     public void tick(ServerWorld world) {
-        for (BoatRacePlayer player : this.running) {
-            long timer = this.timer.getOrDefault(player, 0l);
-            timer += world.getTickManager().getMillisPerTick();
-            this.timer.put(player, timer);
+        long mspt = (long) world.getTickManager().getMillisPerTick();
+
+        for (int id = this.running.nextSetBit(0); id >= 0; id = this.running.nextSetBit(id + 1)) {
+            this.timers[id] += mspt;
         }
     }
 
     /**
-     * Records a split.
+     * Records a split that happened partway through the last tick. The split is
+     * interpolated back from the timer to when the crossing actually happened.
      *
-     * @param player The player to record.
+     * @param world    The world to fetch mspt from.
+     * @param id       The player's id.
+     * @param crossing The fraction of the last tick's movement where the split
+     *                 happened.
      * @return The recorded split time.
      */
-    public long recordSplit(BoatRacePlayer player) {
-        long split = this.timer.getOrDefault(player, 0l);
+    public long recordSplit(ServerWorld world, int id, double crossing) {
+        this.ensureCapacity(id);
 
-        if (!this.splits.containsKey(player)) {
-            List<Long> splits = new LongArrayList();
-            splits.add(split);
+        return this.recordSplit(id, this.timers[id] - Splits.getElapsed(world, crossing));
+    }
 
-            this.splits.put(player, splits);
+    /**
+     * Records a split at a time on the player's timer.
+     *
+     * @param id    The player's id.
+     * @param split The split time.
+     * @return The recorded split time.
+     */
+    long recordSplit(int id, long split) {
+        this.ensureCapacity(id);
+        int count = this.splitCounts[id];
+
+        if (count == 0) {
+            split = Math.max(split, 0l);
+        } else {
+            // never go back past the previous split
+            split = Math.max(split, this.splits[id][count - 1]);
+        }
 
-            return split;
+        // splits keep going over multiple laps when positions are tracked
+        if (count == this.splits[id].length) {
+            this.splits[id] = Arrays.copyOf(this.splits[id], count * 2);
         }
 
-        List<Long> splits = this.splits.get(player);
-        splits.add(split);
+        this.splits[id][count] = split;
+        this.splitCounts[id] = count + 1;
 
         return split;
     }
 
+    /**
+     * Records the first split of a run that began partway through the last tick.
+     * The timer is offset by the time elapsed since the crossing so the run
+     * starts from zero.
+     *
+     * @param world    The world to fetch mspt from.
+     * @param id       The player's id.
+     * @param crossing The fraction of the last tick's movement where the run
+     *                 began.
+     * @return The recorded split time.
+     */
+    public long recordStart(ServerWorld world, int id, double crossing) {
+        this.ensureCapacity(id);
+
+        this.timers[id] = Splits.getElapsed(world, crossing);
+        this.splitCounts[id] = 0;
+
+        return this.recordSplit(world, id, crossing);
+    }
+
     /**
      * Resets the internal timer and splits.
      *
-     * @param player The player to reset for.
+     * @param id The player's id.
      * @return The last timer before a reset.
      */
-    public long reset(BoatRacePlayer player) {
-        long timer = this.timer.getOrDefault(player, 0l);
-        this.timer.remove(player);
-        this.splits.remove(player);
+    public long reset(int id) {
+        if (id >= this.timers.length) {
+            return 0l;
+        }
+
+        long timer = this.timers[id];
+        this.timers[id] = 0l;
+        this.splitCounts[id] = 0;
 
         return timer;
     }
 
     /**
-     * Get the current splits for a player.
+     * Get the number of splits recorded for a player.
+     *
+     * @param id The player's id.
+     * @return The number of splits.
+     */
+    public int getSplitCount(int id) {
+        return id < this.splitCounts.length ? this.splitCounts[id] : 0;
+    }
+
+    /**
+     * Get a player's split at an index.
+     *
+     * @param id  The player's id.
+     * @param idx The index of the split.
+     * @return The split, 0 if it wasn't recorded.
+     */
+    public long getSplit(int id, int idx) {
+        if (idx < 0 || idx >= this.getSplitCount(id)) {
+            return 0l;
+        }
+
+        return this.splits[id][idx];
+    }
+
+    /**
+     * Get a player's latest split.
+     *
+     * @param id The player's id.
+     * @return The split, 0 if none were recorded.
+     */
+    public long getLastSplit(int id) {
+        return this.getSplit(id, this.getSplitCount(id) - 1);
+    }
+
+    /**
+     * Get a copy of the current splits for a player. A player with no splits gets
+     * an empty list, so a personal best made from it never exists or validates.
      *
-     * @param player The player the get splits for.
-     * @return The player's splits.
+     * @param id The player's id.
+     * @return The player's splits, empty if none were recorded.
      */
-    public List<Long> getSplits(BoatRacePlayer player) {
-        return Collections.unmodifiableList(this.splits.getOrDefault(player, List.of(0l)));
+    public LongArrayList getSplits(int id) {
+        int count = this.getSplitCount(id);
+
+        if (count == 0) {
+            return new LongArrayList();
+        }
+
+        return new LongArrayList(this.splits[id], 0, count);
     }
 
     /**
      * Get the timer for a player.
      *
-     * @param player The player the get timer for.
+     * @param id The player's id.
      * @return The player's time.
      */
-    public long getTimer(BoatRacePlayer player) {
-        return this.timer.getOrDefault(player, 0l);
+    public long getTimer(int id) {
+        return id < this.timers.length ? this.timers[id] : 0l;
+    }
+
+    /**
+     * Grow the per player arrays to fit an id.
+     *
+     * @param id The player's id.
+     */
+    private void ensureCapacity(int id) {
+        if (id < this.timers.length) {
+            return;
+        }
+
+        int oldCapacity = this.timers.length;
+        int capacity = Math.max(id + 1, oldCapacity * 2);
+
+        this.timers = Arrays.copyOf(this.timers, capacity);
+        this.splits = Arrays.copyOf(this.splits, capacity);
+        this.splitCounts = Arrays.copyOf(this.splitCounts, capacity);
+
+        for (int i = oldCapacity; i < capacity; i++) {
+            this.splits[i] = new long[this.splitCapacity];
+        }
+    }
+
+    /**
+     * Get the time elapsed between a crossing and the end of the tick.
+     *
+     * @param world    The world to fetch mspt from.
+     * @param crossing The fraction of the tick's movement.
+     * @return The elapsed time in ms.
+     */
+    private static long getElapsed(ServerWorld world, double crossing) {
+        double remaining = 1.0 - MathHelper.clamp(crossing, 0.0, 1.0);
+        return Math.round(remaining * world.getTickManager().getMillisPerTick());
     }
 }
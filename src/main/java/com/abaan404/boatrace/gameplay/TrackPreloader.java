@@ -0,0 +1,77 @@
+package com.abaan404.boatrace.gameplay;
+
+import com.abaan404.boatrace.BoatRace;
+import com.abaan404.boatrace.BoatRaceTrack;
+
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.Registry;
+import net.minecraft.server.world.ChunkTicketType;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.ChunkPos;
+import xyz.nucleoid.plasmid.api.game.GameActivity;
+import xyz.nucleoid.plasmid.api.game.event.GameActivityEvents;
+
+/**
+ * Loads every chunk along the track a few at a time while players wait on the
+ * grid, so chunks are generated before anyone drives through them. The chunks
+ * are generated off the main thread and stay loaded, but not ticked, for the
+ * rest of the game.
+ */
+public class TrackPreloader {
+    /**
+     * Keeps a track chunk loaded without ticking it.
+     */
+    public static final ChunkTicketType TICKET = new ChunkTicketType(0l, false, ChunkTicketType.Use.LOADING);
+
+    // enough to cover most tracks well within a countdown
+    private static final int CHUNKS_PER_TICK = 16;
+
+    private final ServerWorld world;
+    private final long[] chunks;
+    private int next = 0;
+    private int loaded = 0;
+
+    private TrackPreloader(ServerWorld world, BoatRaceTrack track) {
+        this.world = world;
+        this.chunks = track.getFootprint();
+    }
+
+    public static void initialize() {
+        Registry.register(Registries.TICKET_TYPE, Identifier.of(BoatRace.ID, "track"), TICKET);
+    }
+
+    public static void addTo(GameActivity game, ServerWorld world, BoatRaceTrack track) {
+        TrackPreloader trackPreloader = new TrackPreloader(world, track);
+
+        game.listen(GameActivityEvents.TICK, trackPreloader::onTick);
+        game.listen(GameActivityEvents.DISABLE, trackPreloader::onDisable);
+    }
+
+    private void onTick() {
+        if (this.next >= this.chunks.length) {
+            return;
+        }
+
+        int end = Math.min(this.next + CHUNKS_PER_TICK, this.chunks.length);
+        for (; this.next < end; this.next++) {
+            ChunkPos chunk = new ChunkPos(this.chunks[this.next]);
+
+            // only queues the chunk, it is generated on the chunk workers
+            this.world.getChunkManager().addChunkLoadingTicket(TICKET, chunk, 0)
+                    .whenCompleteAsync((result, throwable) -> this.onLoaded(), this.world.getServer());
+        }
+    }
+
+    private void onLoaded() {
+        if (++this.loaded == this.chunks.length) {
+            BoatRace.LOGGER.debug("Preloaded {} track chunks", this.chunks.length);
+        }
+    }
+
+    private void onDisable() {
+        for (int i = 0; i < this.next; i++) {
+            this.world.getChunkManager().removeTicket(TICKET, new ChunkPos(this.chunks[i]), 0);
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.abaan404.boatrace.leaderboard;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import net.minecraft.util.math.MathHelper;
+
+/**
+ * A recorded run, one frame per tick of the vehicle's position and yaw.
+ *
+ * Positions are stored in 1/32 of a block and yaw in 1/256 of a turn. Each frame
+ * starts with a byte flagging which values changed, followed by those values as
+ * zigzag varints. Positions are stored as the change in movement from the
+ * previous frame, so a boat holding its speed and direction costs a single byte.
+ */
+public final class Ghost {
+    public static final Ghost EMPTY = new Ghost(0, new byte[0]);
+
+    public static final Codec<Ghost> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            Codec.INT.fieldOf("frames").forGetter(Ghost::getFrames),
+            Codec.BYTE_BUFFER.fieldOf("data").forGetter(ghost -> ByteBuffer.wrap(ghost.data)))
+            .apply(instance, (frames, data) -> {
+                byte[] bytes = new byte[data.remaining()];
+                data.duplicate().get(bytes);
+
+                // drop a corrupt ghost but keep the personal best it belongs to
+                return Ghost.isValid(frames, bytes) ? new Ghost(frames, bytes) : Ghost.EMPTY;
+            }));
+
+    static final float POSITION_SCALE = 32.0f;
+    static final float YAW_SCALE = 256.0f / 360.0f;
+
+    private static final int CHANGED_X = 1;
+    private static final int CHANGED_Y = 1 << 1;
+    private static final int CHANGED_Z = 1 << 2;
+    private static final int CHANGED_YAW = 1 << 3;
+    private static final int CHANGED_ALL = CHANGED_X | CHANGED_Y | CHANGED_Z | CHANGED_YAW;
+
+    // a zigzag encoded int never takes more than this many bytes
+    private static final int MAX_VARINT_SIZE = 5;
+
+    private final int frames;
+    private final byte[] data;
+
+    /**
+     * Create a ghost from encoded frames.
+     *
+     * @param frames The number of frames.
+     * @param data   The encoded frames.
+     * @throws IllegalArgumentException If the data doesn't hold exactly that many
+     *                                  frames.
+     */
+    public Ghost(int frames, byte[] data) {
+        if (!Ghost.isValid(frames, data)) {
+            throw new IllegalArgumentException("Ghost data does not hold " + frames + " frames");
+        }
+
+        this.frames = frames;
+        this.data = data;
+    }
+
+    /**
+     * Get the number of recorded frames, one per tick.
+     *
+     * @return The number of frames.
+     */
+    public int getFrames() {
+        return this.frames;
+    }
+
+    /**
+     * Get the size of the encoded frames.
+     *
+     * @return The size in bytes.
+     */
+    public int size() {
+        return this.data.length;
+    }
+
+    /**
+     * Get the encoded frames.
+     *
+     * @return A copy of the encoded frames.
+     */
+    public byte[] getData() {
+        return this.data.clone();
+    }
+
+    public boolean exists() {
+        return this.frames > 0;
+    }
+
+    /**
+     * Check that encoded frames can be played back, every ghost is checked when
+     * created so a reader never runs past its data.
+     *
+     * @param frames The number of frames.
+     * @param data   The encoded frames.
+     * @return If the data holds exactly that many well formed frames.
+     */
+    public static boolean isValid(int frames, byte[] data) {
+        if (frames < 0) {
+            return false;
+        }
+
+        int offset = 0;
+        for (int i = 0; i < frames; i++) {
+            if (offset >= data.length) {
+                return false;
+            }
+
+            int changed = data[offset++];
+            if ((changed & ~CHANGED_ALL) != 0) {
+                return false;
+            }
+
+            for (int values = Integer.bitCount(changed); values > 0; values--) {
+                offset = Ghost.skipVarInt(data, offset);
+                if (offset < 0) {
+                    return false;
+                }
+            }
+        }
+
+        return offset == data.length;
+    }
+
+    /**
+     * Get the offset after a varint.
+     *
+     * @param data   The encoded frames.
+     * @param offset The varint's offset.
+     * @return The offset after it, -1 if it is cut off or too long.
+     */
+    private static int skipVarInt(byte[] data, int offset) {
+        for (int i = 0; i < MAX_VARINT_SIZE && offset < data.length; i++) {
+            if ((data[offset++] & 0x80) == 0) {
+                return offset;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Play the ghost back from its first frame.
+     *
+     * @return A reader over the frames.
+     */
+    public Reader read() {
+        return new Reader(this);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * this.frames + Arrays.hashCode(this.data);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof Ghost other))
+            return false;
+        return this.frames == other.frames && Arrays.equals(this.data, other.data);
+    }
+
+    /**
+     * Records a run into a growable buffer, one frame per tick.
+     */
+    public static final class Writer {
+        private final ByteArrayList data = new ByteArrayList();
+        private int frames = 0;
+
+        private int x = 0;
+        private int y = 0;
+        private int z = 0;
+        private int dx = 0;
+        private int dy = 0;
+        private int dz = 0;
+        private int yaw = 0;
+
+        /**
+         * Append a frame.
+         *
+         * @param x   The vehicle's x pos.
+         * @param y   The vehicle's y pos.
+         * @param z   The vehicle's z pos.
+         * @param yaw The vehicle's yaw.
+         */
+        public void write(double x, double y, double z, float yaw) {
+            int qx = MathHelper.floor(x * POSITION_SCALE + 0.5);
+            int qy = MathHelper.floor(y * POSITION_SCALE + 0.5);
+            int qz = MathHelper.floor(z * POSITION_SCALE + 0.5);
+            int qyaw = MathHelper.floor(yaw * YAW_SCALE + 0.5f) & 0xFF;
+
+            int ddx = (qx - this.x) - this.dx;
+            int ddy = (qy - this.y) - this.dy;
+            int ddz = (qz - this.z) - this.dz;
+            int dyaw = (byte) (qyaw - this.yaw);
+
+            int changed = (ddx != 0 ? CHANGED_X : 0)
+                    | (ddy != 0 ? CHANGED_Y : 0)
+                    | (ddz != 0 ? CHANGED_Z : 0)
+                    | (dyaw != 0 ? CHANGED_YAW : 0);
+
+            this.data.add((byte) changed);
+
+            if (ddx != 0)
+                this.writeVarInt(ddx);
+            if (ddy != 0)
+                this.writeVarInt(ddy);
+            if (ddz != 0)
+                this.writeVarInt(ddz);
+            if (dyaw != 0)
+                this.writeVarInt(dyaw);
+
+            this.dx = qx - this.x;
+            this.dy = qy - this.y;
+            this.dz = qz - this.z;
+            this.x = qx;
+            this.y = qy;
+            this.z = qz;
+            this.yaw = qyaw;
+            this.frames++;
+        }
+
+        /**
+         * Get the number of recorded frames.
+         *
+         * @return The number of frames.
+         */
+        public int getFrames() {
+            return this.frames;
+        }
+
+        /**
+         * Copy everything recorded so far into a ghost.
+         *
+         * @return The ghost.
+         */
+        public Ghost toGhost() {
+            return new Ghost(this.frames, this.data.toByteArray());
+        }
+
+        private void writeVarInt(int value) {
+            int zigzag = (value << 1) ^ (value >> 31);
+
+            while ((zigzag & ~0x7F) != 0) {
+                this.data.add((byte) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+
+            this.data.add((byte) zigzag);
+        }
+    }
+
+    /**
+     * Plays a ghost back one frame at a time.
+     */
+    public static final class Reader {
+        private final Ghost ghost;
+        private int offset = 0;
+        private int frame = 0;
+
+        private int x = 0;
+        private int y = 0;
+        private int z = 0;
+        private int dx = 0;
+        private int dy = 0;
+        private int dz = 0;
+        private int yaw = 0;
+
+        private Reader(Ghost ghost) {
+            this.ghost = ghost;
+        }
+
+        /**
+         * Advance to the next frame.
+         *
+         * @return If there was another frame.
+         */
+        public boolean next() {
+            if (this.frame >= this.ghost.frames) {
+                return false;
+            }
+
+            int changed = this.ghost.data[this.offset++];
+
+            if ((changed & CHANGED_X) != 0)
+                this.dx += this.readVarInt();
+            if ((changed & CHANGED_Y) != 0)
+                this.dy += this.readVarInt();
+            if ((changed & CHANGED_Z) != 0)
+                this.dz += this.readVarInt();
+            if ((changed & CHANGED_YAW) != 0)
+                this.yaw = (this.yaw + this.readVarInt()) & 0xFF;
+
+            this.x += this.dx;
+            this.y += this.dy;
+            this.z += this.dz;
+            this.frame++;
+            return true;
+        }
+
+        /**
+         * Get the current frame's index.
+         *
+         * @return The frame, -1 before the first call to {@link #next()}.
+         */
+        public int getFrame() {
+            return this.frame - 1;
+        }
+
+        public double getX() {
+            return this.x / POSITION_SCALE;
+        }
+
+        public double getY() {
+            return this.y / POSITION_SCALE;
+        }
+
+        public double getZ() {
+            return this.z / POSITION_SCALE;
+        }
+
+        public float getYaw() {
+            return MathHelper.wrapDegrees(this.yaw / YAW_SCALE);
+        }
+
+        private int readVarInt() {
+            int zigzag = 0;
+
+            for (int shift = 0; shift < MAX_VARINT_SIZE * 7; shift += 7) {
+                byte b = this.ghost.data[this.offset++];
+                zigzag |= (b & 0x7F) << shift;
+
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+            }
+
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+    }
+}
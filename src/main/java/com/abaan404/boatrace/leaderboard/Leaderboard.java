@@ -1,7 +1,15 @@
 package com.abaan404.boatrace.leaderboard;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import com.abaan404.boatrace.BoatRace;
 import com.abaan404.boatrace.BoatRacePlayer;
@@ -9,25 +17,47 @@ import com.abaan404.boatrace.BoatRaceTrack;
 import com.mojang.serialization.Codec;
 import com.mojang.serialization.codecs.RecordCodecBuilder;
 
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import net.fabricmc.fabric.api.attachment.v1.AttachmentRegistry;
 import net.fabricmc.fabric.api.attachment.v1.AttachmentType;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.Identifier;
+import net.minecraft.util.Util;
 
 /**
- * Holds the leaderboard for a track stored persistently.
+ * Holds the leaderboard for a track stored persistently. Every track keeps its
+ * personal bests sorted and indexed by player, submissions and deletions only
+ * touch the one entry and track they change.
+ *
+ * The persistent leaderboard keeps every track in its own shard through
+ * {@link LeaderboardStorage}, loading a track the first time it is used and
+ * unloading it once it has been saved and left unused. Every change is appended
+ * to the track's journal and flushed to disk at the end of the tick, changed
+ * tracks are compacted into a new snapshot when the world saves.
+ * All writes happen in order on a single I/O thread which is only handed
+ * immutable personal bests and copies of a track, the server thread keeps
+ * reading the in memory leaderboard. Leaderboards without storage are kept on a
+ * world attachment instead.
  */
-public record Leaderboard(Map<String, List<PersonalBest>> leaderboard) {
+public final class Leaderboard {
     public static void initialize() {
+        ServerTickEvents.END_SERVER_TICK.register(Leaderboard::sync);
+        ServerLifecycleEvents.BEFORE_SAVE.register((server, flush, force) -> Leaderboard.save(server));
+        ServerLifecycleEvents.SERVER_STOPPING.register(Leaderboard::close);
     }
 
     public static final Codec<Leaderboard> CODEC = RecordCodecBuilder.create(instance -> instance.group(
             Codec.unboundedMap(
                     Codec.STRING,
                     PersonalBest.CODEC.listOf())
-                    .fieldOf("leaderboard").forGetter(Leaderboard::leaderboard))
+                    .fieldOf("leaderboard").forGetter(Leaderboard::toMap))
             .apply(instance, Leaderboard::new));
 
     public static final AttachmentType<Leaderboard> ATTACHMENT = AttachmentRegistry.create(
@@ -35,6 +65,82 @@ public record Leaderboard(Map<String, List<PersonalBest>> leaderboard) {
                     .initializer(() -> new Leaderboard(Map.of()))
                     .persistent(Leaderboard.CODEC));
 
+    private static final AttachmentType<Leaderboard> PERSISTENT = AttachmentRegistry.create(
+            Identifier.of(BoatRace.ID, "leaderboard_persistent"));
+
+    private static final TrackLeaderboard EMPTY = new TrackLeaderboard();
+
+    // tracks nothing has read for this long are unloaded once saved
+    private static final long IDLE_MILLIS = 10l * 60l * 1000l;
+
+    private final Optional<LeaderboardStorage> storage;
+    private final Optional<ExecutorService> io;
+    private final Map<String, TrackLeaderboard> tracks = new Object2ObjectOpenHashMap<>();
+    private final Set<String> dirty = new ObjectOpenHashSet<>();
+    private final Set<String> unreadable = new ObjectOpenHashSet<>();
+    private final Object2LongMap<String> lastUsed = new Object2LongOpenHashMap<>();
+    private boolean unsynced = false;
+
+    public Leaderboard(Map<String, List<PersonalBest>> leaderboard) {
+        this.storage = Optional.empty();
+        this.io = Optional.empty();
+        leaderboard.forEach((key, records) -> this.tracks.put(key, new TrackLeaderboard(records)));
+    }
+
+    public Leaderboard(LeaderboardStorage storage) {
+        this.storage = Optional.of(storage);
+        this.io = Optional.of(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BoatRace Leaderboard IO");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Get the server's persistent leaderboard, moving any personal bests from the
+     * old overworld attachment into their shards the first time.
+     *
+     * @param server The server.
+     * @return The persistent leaderboard.
+     */
+    public static Leaderboard getPersistent(MinecraftServer server) {
+        ServerWorld overworld = server.getOverworld();
+
+        Leaderboard leaderboard = overworld.getAttached(Leaderboard.PERSISTENT);
+        if (leaderboard == null) {
+            leaderboard = new Leaderboard(new LeaderboardStorage(server));
+
+            Leaderboard legacy = overworld.getAttached(Leaderboard.ATTACHMENT);
+            if (legacy != null) {
+                // only forget the old attachment once every track is safely in its shard
+                leaderboard.migrate(legacy).whenCompleteAsync((result, throwable) -> {
+                    if (throwable != null) {
+                        BoatRace.LOGGER.error("Failed to migrate the leaderboard, keeping the old attachment",
+                                throwable);
+                        return;
+                    }
+
+                    overworld.removeAttached(Leaderboard.ATTACHMENT);
+                }, server);
+            }
+
+            overworld.setAttached(Leaderboard.PERSISTENT, leaderboard);
+        }
+
+        return leaderboard;
+    }
+
+    /**
+     * Get the indexed leaderboard for a track. The track leaderboard is live and
+     * should only be read from the server thread.
+     *
+     * @param track The track.
+     * @return The track's leaderboard.
+     */
+    public synchronized TrackLeaderboard getTrackLeaderboard(BoatRaceTrack track) {
+        return this.getTrack(Leaderboard.getKey(track));
+    }
+
     /**
      * Get the track's leaderboard sorted by time.
      *
@@ -42,7 +148,7 @@ public record Leaderboard(Map<String, List<PersonalBest>> leaderboard) {
      * @return A map of personal bests.
      */
     public List<PersonalBest> getLeaderboard(BoatRaceTrack track) {
-        return this.leaderboard.getOrDefault(String.valueOf(track.hashCode()), ObjectArrayList.of());
+        return this.getTrackLeaderboard(track).getRecords();
     }
 
     /**
@@ -52,14 +158,8 @@ public record Leaderboard(Map<String, List<PersonalBest>> leaderboard) {
      * @param player The player.
      * @return Their personal best.
      */
-    public PersonalBest getPersonalBest(BoatRaceTrack track, BoatRacePlayer player) {
-        for (PersonalBest pb : this.getLeaderboard(track)) {
-            if (pb.player().equals(player)) {
-                return pb;
-            }
-        }
-
-        return PersonalBest.DEFAULT;
+    public synchronized PersonalBest getPersonalBest(BoatRaceTrack track, BoatRacePlayer player) {
+        return this.getTrackLeaderboard(track).getPersonalBest(player);
     }
 
     /**
@@ -69,15 +169,8 @@ public record Leaderboard(Map<String, List<PersonalBest>> leaderboard) {
      * @param player The player.
      * @return Their position on the track. -1 if not found.
      */
-    public int getLeaderboardPosition(BoatRaceTrack track, BoatRacePlayer player) {
-        List<PersonalBest> trackLeaderboard = this.getLeaderboard(track);
-        for (int i = 0; i < trackLeaderboard.size(); i++) {
-            if (trackLeaderboard.get(i).player().equals(player)) {
-                return i;
-            }
-        }
-
-        return -1;
+    public synchronized int getLeaderboardPosition(BoatRaceTrack track, BoatRacePlayer player) {
+        return this.getTrackLeaderboard(track).getPosition(player);
     }
 
     /**
@@ -86,66 +179,177 @@ public record Leaderboard(Map<String, List<PersonalBest>> leaderboard) {
      * @param world        The world the leaderboard should be stored.
      * @param track        The track.
      * @param personalBest Personal best to submit.
-     * @return A new leaderboard with the new personal best.
+     * @return If the personal best was submitted.
      */
-    public Leaderboard trySubmit(ServerWorld world, BoatRaceTrack track, PersonalBest personalBest) {
+    public synchronized boolean trySubmit(ServerWorld world, BoatRaceTrack track, PersonalBest personalBest) {
         PersonalBest currentPersonalBest = this.getPersonalBest(track, personalBest.player());
         if (personalBest.timer() > currentPersonalBest.timer()) {
             // not a better pb
-            return this;
+            return false;
         }
 
         // invalid pb, reject
         if (!Leaderboard.validate(track, personalBest)) {
-            return this;
+            return false;
         }
 
-        return this.submit(world, track, personalBest);
+        return this.submit(world, track, personalBest) >= 0;
     }
 
     /**
      * submits the personal best for this track.
      *
+     * @param world        The world the leaderboard should be stored.
      * @param track        The track.
      * @param personalBest Personal best to submit.
-     * @return A new leaderboard with the new personal best.
+     * @return The new position of the personal best. -1 if the track's stored
+     *         leaderboard could not be loaded.
      */
-    public Leaderboard submit(ServerWorld world, BoatRaceTrack track, PersonalBest personalBest) {
-        List<PersonalBest> newTrackLeaderboard = new ObjectArrayList<>(this.getLeaderboard(track));
+    public synchronized int submit(ServerWorld world, BoatRaceTrack track, PersonalBest personalBest) {
+        String key = Leaderboard.getKey(track);
 
-        newTrackLeaderboard.removeIf(pb -> pb.player().equals(personalBest.player()));
-        newTrackLeaderboard.add(personalBest);
+        // an empty board standing in for one that failed to load must never be
+        // written, compacting it would replace every stored personal best
+        if (this.unreadable.contains(key)) {
+            BoatRace.LOGGER.warn("Not submitting a personal best to track \"{}\", its leaderboard failed to load",
+                    key);
+            return -1;
+        }
 
-        newTrackLeaderboard.sort((a, b) -> Long.compare(a.timer(), b.timer()));
+        TrackLeaderboard trackLeaderboard = this.getTrack(key);
+        if (trackLeaderboard == Leaderboard.EMPTY) {
+            trackLeaderboard = new TrackLeaderboard();
+            this.tracks.put(key, trackLeaderboard);
+        }
 
-        Map<String, List<PersonalBest>> newLeaderboardMap = new Object2ObjectOpenHashMap<>(this.leaderboard);
-        newLeaderboardMap.put(String.valueOf(track.hashCode()), newTrackLeaderboard);
+        int position = trackLeaderboard.submit(personalBest);
+        this.markDirty(world, key);
 
-        Leaderboard newLeaderboard = new Leaderboard(newLeaderboardMap);
-        world.setAttached(Leaderboard.ATTACHMENT, newLeaderboard);
-        return newLeaderboard;
+        // journal what was kept, a ghost outside the top is never written
+        PersonalBest stored = trackLeaderboard.getPersonalBest(personalBest.player());
+        this.persist(storage -> storage.appendSubmit(key, stored),
+                "journal a personal best for track " + key);
+        return position;
     }
 
     /**
      * deletes the personal best for this track.
      *
+     * @param world  The world the leaderboard should be stored.
      * @param track  The track.
      * @param player The player to delete for.
-     * @return A new leaderboard with the new personal best.
+     * @return If the player had a personal best to delete.
      */
-    public Leaderboard delete(ServerWorld world, BoatRaceTrack track, BoatRacePlayer player) {
-        List<PersonalBest> newTrackLeaderboard = new ObjectArrayList<>(this.getLeaderboard(track));
+    public synchronized boolean delete(ServerWorld world, BoatRaceTrack track, BoatRacePlayer player) {
+        String key = Leaderboard.getKey(track);
 
-        if (!newTrackLeaderboard.removeIf(pb -> pb.player().equals(player))) {
-            return this;
+        int position = this.getTrack(key).remove(player);
+        if (position < 0) {
+            return false;
         }
 
-        Map<String, List<PersonalBest>> newLeaderboardMap = new Object2ObjectOpenHashMap<>(this.leaderboard);
-        newLeaderboardMap.put(String.valueOf(track.hashCode()), newTrackLeaderboard);
+        this.markDirty(world, key);
+
+        this.persist(storage -> storage.appendDelete(key, player),
+                "journal a deleted personal best for track " + key);
+        return true;
+    }
 
-        Leaderboard newLeaderboard = new Leaderboard(newLeaderboardMap);
-        world.setAttached(Leaderboard.ATTACHMENT, newLeaderboard);
-        return newLeaderboard;
+    /**
+     * Get a copy of a track's personal bests, safe to use off the server thread.
+     *
+     * @param key The track's key.
+     * @return The personal bests sorted by time.
+     */
+    public synchronized List<PersonalBest> snapshot(String key) {
+        TrackLeaderboard trackLeaderboard = this.tracks.get(key);
+        return trackLeaderboard != null ? trackLeaderboard.copyRecords() : List.of();
+    }
+
+    /**
+     * Flush journaled changes to disk. Does nothing for leaderboards without
+     * storage.
+     */
+    public synchronized void sync() {
+        if (!this.unsynced) {
+            return;
+        }
+
+        this.unsynced = false;
+        this.persist(LeaderboardStorage::sync, "flush the leaderboard journals");
+    }
+
+    /**
+     * Compact every changed track into a new snapshot and unload tracks that
+     * haven't been used for a while. Does nothing for leaderboards without
+     * storage.
+     */
+    public synchronized void save() {
+        if (this.storage.isEmpty()) {
+            return;
+        }
+
+        // the I/O thread runs tasks in order, so the journal is emptied after
+        // every change in the copy and before any change made after it
+        for (String key : this.drainDirty()) {
+            List<PersonalBest> records = this.snapshot(key);
+
+            this.persist(storage -> {
+                try {
+                    storage.compact(key, records);
+                } catch (IOException e) {
+                    // try again on the next save
+                    synchronized (this) {
+                        this.dirty.add(key);
+                    }
+
+                    throw e;
+                }
+            }, "save the leaderboard for track " + key);
+        }
+
+        long now = Util.getMeasuringTimeMs();
+        for (String key : this.tracks.keySet()) {
+            if (!this.dirty.contains(key) && now - this.lastUsed.getLong(key) >= IDLE_MILLIS) {
+                this.persist(storage -> this.evict(key), "unload the leaderboard for track " + key);
+            }
+        }
+    }
+
+    /**
+     * Write out every pending change and stop the I/O thread. Does nothing for
+     * leaderboards without storage.
+     */
+    public void close() {
+        if (this.io.isEmpty()) {
+            return;
+        }
+
+        this.save();
+        this.persist(LeaderboardStorage::close, "close the leaderboard journals");
+
+        ExecutorService io = this.io.get();
+        io.shutdown();
+
+        try {
+            if (!io.awaitTermination(1, TimeUnit.MINUTES)) {
+                BoatRace.LOGGER.error("Timed out writing the leaderboard, some personal bests may be lost");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get and clear the keys of every track changed since the last call.
+     *
+     * @return The changed track keys.
+     */
+    private synchronized Set<String> drainDirty() {
+        Set<String> dirty = new ObjectOpenHashSet<>(this.dirty);
+        this.dirty.clear();
+
+        return dirty;
     }
 
     /**
@@ -191,4 +395,201 @@ public record Leaderboard(Map<String, List<PersonalBest>> leaderboard) {
 
         return true;
     }
+
+    /**
+     * Get the key a track's leaderboard is stored under.
+     *
+     * @param track The track.
+     * @return The key.
+     */
+    public static String getKey(BoatRaceTrack track) {
+        return String.valueOf(track.hashCode());
+    }
+
+    /**
+     * Save the server's persistent leaderboard if it was ever used.
+     *
+     * @param server The server.
+     */
+    private static void save(MinecraftServer server) {
+        ServerWorld overworld = server.getOverworld();
+        if (overworld == null) {
+            return;
+        }
+
+        Leaderboard leaderboard = overworld.getAttached(Leaderboard.PERSISTENT);
+        if (leaderboard != null) {
+            leaderboard.save();
+        }
+    }
+
+    /**
+     * Flush the server's persistent leaderboard journals if it was ever used.
+     *
+     * @param server The server.
+     */
+    private static void sync(MinecraftServer server) {
+        Leaderboard leaderboard = server.getOverworld().getAttached(Leaderboard.PERSISTENT);
+        if (leaderboard != null) {
+            leaderboard.sync();
+        }
+    }
+
+    /**
+     * Compact and close the server's persistent leaderboard.
+     *
+     * @param server The server.
+     */
+    private static void close(MinecraftServer server) {
+        Leaderboard leaderboard = server.getOverworld().getAttached(Leaderboard.PERSISTENT);
+        if (leaderboard != null) {
+            leaderboard.close();
+        }
+    }
+
+    /**
+     * Get a track's leaderboard, loading it from storage the first time.
+     *
+     * @param key The track's key.
+     * @return The track's leaderboard, EMPTY if it has no personal bests yet or
+     *         failed to load.
+     */
+    private TrackLeaderboard getTrack(String key) {
+        TrackLeaderboard trackLeaderboard = this.tracks.get(key);
+        if (trackLeaderboard != null) {
+            if (this.storage.isPresent()) {
+                this.lastUsed.put(key, Util.getMeasuringTimeMs());
+            }
+
+            return trackLeaderboard;
+        }
+
+        if (this.storage.isEmpty() || this.unreadable.contains(key)) {
+            return Leaderboard.EMPTY;
+        }
+
+        try {
+            trackLeaderboard = this.storage.get().load(key);
+        } catch (IOException e) {
+            // left on disk untouched and read only until the next restart
+            BoatRace.LOGGER.error("Failed to load the leaderboard for track \"{}\"", key, e);
+            this.unreadable.add(key);
+            return Leaderboard.EMPTY;
+        }
+
+        this.tracks.put(key, trackLeaderboard);
+        this.lastUsed.put(key, Util.getMeasuringTimeMs());
+        return trackLeaderboard;
+    }
+
+    /**
+     * Unload a track if it is still saved and unused. Runs on the I/O thread
+     * after every write queued before it, so nothing for the track is pending.
+     *
+     * @param key The track's key.
+     */
+    private synchronized void evict(String key) {
+        if (this.dirty.contains(key) || Util.getMeasuringTimeMs() - this.lastUsed.getLong(key) < IDLE_MILLIS) {
+            return;
+        }
+
+        this.tracks.remove(key);
+        this.lastUsed.removeLong(key);
+    }
+
+    /**
+     * Move the tracks from an old leaderboard that don't have a shard yet and
+     * write their shards.
+     *
+     * @param legacy The old leaderboard.
+     * @return A future completed once every shard is written.
+     */
+    private synchronized CompletableFuture<Void> migrate(Leaderboard legacy) {
+        LeaderboardStorage storage = this.storage.orElseThrow();
+        ExecutorService io = this.io.orElseThrow();
+        List<CompletableFuture<Void>> writes = new ObjectArrayList<>();
+
+        legacy.tracks.forEach((key, trackLeaderboard) -> {
+            if (storage.exists(key)) {
+                return;
+            }
+
+            List<PersonalBest> records = trackLeaderboard.copyRecords();
+            this.tracks.put(key, new TrackLeaderboard(records));
+
+            writes.add(CompletableFuture.runAsync(() -> {
+                try {
+                    storage.compact(key, records);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, io));
+        });
+
+        return CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Run a write on the I/O thread. Does nothing for leaderboards without
+     * storage.
+     *
+     * @param task        The write.
+     * @param description What the write does, logged if it fails.
+     */
+    private void persist(StorageTask task, String description) {
+        if (this.io.isEmpty()) {
+            return;
+        }
+
+        LeaderboardStorage storage = this.storage.orElseThrow();
+        ExecutorService io = this.io.get();
+
+        if (io.isShutdown()) {
+            BoatRace.LOGGER.warn("Tried to {} after the leaderboard was closed", description);
+            return;
+        }
+
+        io.execute(() -> {
+            try {
+                task.run(storage);
+            } catch (IOException e) {
+                BoatRace.LOGGER.error("Failed to {}", description, e);
+            }
+        });
+    }
+
+    /**
+     * Mark a track as changed.
+     *
+     * @param world The world the leaderboard is stored in.
+     * @param key   The track's key.
+     */
+    private void markDirty(ServerWorld world, String key) {
+        this.dirty.add(key);
+        this.unsynced = true;
+
+        // attaching the same instance again only flags the world for saving
+        if (this.storage.isEmpty()) {
+            world.setAttached(Leaderboard.ATTACHMENT, this);
+        }
+    }
+
+    /**
+     * Get every track's personal bests for serialization.
+     *
+     * @return A map of track keys to personal bests.
+     */
+    private synchronized Map<String, List<PersonalBest>> toMap() {
+        Map<String, List<PersonalBest>> map = new Object2ObjectOpenHashMap<>(this.tracks.size());
+        this.tracks.forEach((key, trackLeaderboard) -> map.put(key, trackLeaderboard.copyRecords()));
+
+        return map;
+    }
+
+    /**
+     * A write to run against the storage.
+     */
+    private interface StorageTask {
+        void run(LeaderboardStorage storage) throws IOException;
+    }
 }
@@ -0,0 +1,451 @@
+package com.abaan404.boatrace.leaderboard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import com.abaan404.boatrace.BoatRace;
+import com.abaan404.boatrace.BoatRacePlayer;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.WorldSavePath;
+import xyz.nucleoid.plasmid.api.util.PlayerRef;
+
+/**
+ * Stores every track's leaderboard in its own binary file under the world save.
+ *
+ * A shard starts with a magic number, a version and the number of records. Each
+ * record holds the player's uuid and name then their splits as zigzag varint
+ * deltas from the previous split. Since version 2 each record ends with its
+ * ghost's frame count and encoded frames.
+ *
+ * Changes made since the last snapshot are appended to a journal next to it,
+ * each entry is length prefixed so a torn write at the end is dropped on replay.
+ * Compacting a track writes a new snapshot and empties its journal.
+ *
+ * Reading a track never touches an open journal so it doesn't wait on writes
+ * for other tracks.
+ */
+public class LeaderboardStorage {
+    private static final int MAGIC = 0x4252_4C42; // BRLB
+    private static final int VERSION = 2;
+    private static final int VERSION_NO_GHOSTS = 1;
+
+    private static final byte SUBMIT = 0;
+    private static final byte DELETE = 1;
+    private static final byte SUBMIT_WITH_GHOST = 2;
+
+    // far past the longest ghost the recorder keeps, anything larger is corrupt
+    private static final int MAX_GHOST_SIZE = 1 << 20;
+
+    private final Path directory;
+    private final Map<String, FileChannel> journals = new Object2ObjectOpenHashMap<>();
+    private final Set<FileChannel> unsynced = new ObjectOpenHashSet<>();
+
+    public LeaderboardStorage(MinecraftServer server) {
+        this(server.getSavePath(WorldSavePath.ROOT).resolve(BoatRace.ID).resolve("leaderboards"));
+    }
+
+    public LeaderboardStorage(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Check if a track has a shard stored.
+     *
+     * @param key The track's key.
+     * @return If the shard exists.
+     */
+    public boolean exists(String key) {
+        return Files.isRegularFile(this.getPath(key)) || Files.isRegularFile(this.getJournalPath(key));
+    }
+
+    /**
+     * Load a track's leaderboard from its snapshot and replay its journal.
+     *
+     * @param key The track's key.
+     * @return The track's leaderboard.
+     * @throws IOException If the shard could not be read.
+     */
+    public TrackLeaderboard load(String key) throws IOException {
+        TrackLeaderboard trackLeaderboard = new TrackLeaderboard(this.read(key));
+
+        Path path = this.getJournalPath(key);
+        if (!Files.isRegularFile(path)) {
+            return trackLeaderboard;
+        }
+
+        byte[] bytes = Files.readAllBytes(path);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        while (buffer.remaining() >= Integer.BYTES) {
+            int length = buffer.getInt(buffer.position());
+            if (length <= 0 || buffer.remaining() - Integer.BYTES < length) {
+                break;
+            }
+
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(bytes, buffer.position() + Integer.BYTES, length));
+
+            switch (in.readByte()) {
+                case LeaderboardStorage.SUBMIT -> {
+                    trackLeaderboard.submit(LeaderboardStorage.readRecord(in, false));
+                }
+                case LeaderboardStorage.SUBMIT_WITH_GHOST -> {
+                    trackLeaderboard.submit(LeaderboardStorage.readRecord(in, true));
+                }
+                case LeaderboardStorage.DELETE -> {
+                    UUID uuid = new UUID(in.readLong(), in.readLong());
+                    trackLeaderboard.remove(new BoatRacePlayer(PlayerRef.ofUnchecked(uuid), ""));
+                }
+                default -> {
+                    throw new IOException("Unknown leaderboard journal entry: " + path);
+                }
+            }
+
+            buffer.position(buffer.position() + Integer.BYTES + length);
+        }
+
+        if (buffer.hasRemaining()) {
+            // the server stopped partway through the last entry
+            BoatRace.LOGGER.warn("Dropping {} bytes from the end of leaderboard journal \"{}\"",
+                    buffer.remaining(), path);
+
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(buffer.position());
+            }
+        }
+
+        return trackLeaderboard;
+    }
+
+    /**
+     * Append a submitted personal best to a track's journal. It is only durable
+     * after the next {@link #sync()}.
+     *
+     * @param key          The track's key.
+     * @param personalBest The personal best.
+     * @throws IOException If the journal could not be written.
+     */
+    public synchronized void appendSubmit(String key, PersonalBest personalBest) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeByte(LeaderboardStorage.SUBMIT_WITH_GHOST);
+        LeaderboardStorage.writeRecord(out, personalBest);
+
+        this.append(key, bytes.toByteArray());
+    }
+
+    /**
+     * Append a deleted personal best to a track's journal. It is only durable
+     * after the next {@link #sync()}.
+     *
+     * @param key    The track's key.
+     * @param player The player whose personal best was deleted.
+     * @throws IOException If the journal could not be written.
+     */
+    public synchronized void appendDelete(String key, BoatRacePlayer player) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        UUID uuid = player.ref().id();
+        out.writeByte(LeaderboardStorage.DELETE);
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+
+        this.append(key, bytes.toByteArray());
+    }
+
+    /**
+     * Flush every journal written to since the last sync to disk.
+     *
+     * @throws IOException If a journal could not be flushed.
+     */
+    public synchronized void sync() throws IOException {
+        for (FileChannel channel : this.unsynced) {
+            channel.force(false);
+        }
+
+        this.unsynced.clear();
+    }
+
+    /**
+     * Fold a track's journal into a new snapshot.
+     *
+     * @param key     The track's key.
+     * @param records Every personal best currently on the track.
+     * @throws IOException If the shard could not be written.
+     */
+    public synchronized void compact(String key, List<PersonalBest> records) throws IOException {
+        this.write(key, records);
+
+        // replaying entries already in the snapshot is harmless, so a crash
+        // before this only costs a longer replay
+        FileChannel channel = this.journals.get(key);
+        if (channel != null) {
+            channel.truncate(0l);
+            channel.force(false);
+            this.unsynced.remove(channel);
+        } else {
+            Files.deleteIfExists(this.getJournalPath(key));
+        }
+    }
+
+    /**
+     * Flush and close every open journal.
+     *
+     * @throws IOException If a journal could not be closed.
+     */
+    public synchronized void close() throws IOException {
+        this.sync();
+
+        for (FileChannel channel : this.journals.values()) {
+            channel.close();
+        }
+
+        this.journals.clear();
+    }
+
+    /**
+     * Read a track's personal bests.
+     *
+     * @param key The track's key.
+     * @return The personal bests, empty if the track has no shard.
+     * @throws IOException If the shard could not be read.
+     */
+    public List<PersonalBest> read(String key) throws IOException {
+        Path path = this.getPath(key);
+        if (!Files.isRegularFile(path)) {
+            return List.of();
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != LeaderboardStorage.MAGIC) {
+                throw new IOException("Not a leaderboard shard: " + path);
+            }
+
+            int version = in.readInt();
+            if (version != LeaderboardStorage.VERSION && version != LeaderboardStorage.VERSION_NO_GHOSTS) {
+                throw new IOException("Unsupported leaderboard shard version " + version + ": " + path);
+            }
+
+            int count = LeaderboardStorage.readVarInt(in);
+            List<PersonalBest> records = new ObjectArrayList<>(count);
+
+            for (int i = 0; i < count; i++) {
+                records.add(LeaderboardStorage.readRecord(in, version != LeaderboardStorage.VERSION_NO_GHOSTS));
+            }
+
+            return records;
+        }
+    }
+
+    /**
+     * Write a track's personal bests, replacing the shard once fully written.
+     *
+     * @param key     The track's key.
+     * @param records The personal bests.
+     * @throws IOException If the shard could not be written.
+     */
+    public synchronized void write(String key, List<PersonalBest> records) throws IOException {
+        Files.createDirectories(this.directory);
+
+        Path path = this.getPath(key);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+
+            out.writeInt(LeaderboardStorage.MAGIC);
+            out.writeInt(LeaderboardStorage.VERSION);
+            LeaderboardStorage.writeVarInt(out, records.size());
+
+            for (PersonalBest pb : records) {
+                LeaderboardStorage.writeRecord(out, pb);
+            }
+
+            // the snapshot has to be on disk before its journal is emptied
+            out.flush();
+            channel.force(true);
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Append a length prefixed entry to a track's journal.
+     *
+     * @param key   The track's key.
+     * @param entry The entry.
+     * @throws IOException If the journal could not be written.
+     */
+    private void append(String key, byte[] entry) throws IOException {
+        FileChannel channel = this.journals.get(key);
+        if (channel == null) {
+            Files.createDirectories(this.directory);
+
+            channel = FileChannel.open(this.getJournalPath(key),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            this.journals.put(key, channel);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + entry.length);
+        buffer.putInt(entry.length).put(entry).flip();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        this.unsynced.add(channel);
+    }
+
+    /**
+     * Get the snapshot file for a track.
+     *
+     * @param key The track's key.
+     * @return The path to the shard.
+     */
+    private Path getPath(String key) {
+        return this.directory.resolve(key + ".dat");
+    }
+
+    /**
+     * Get the journal file for a track.
+     *
+     * @param key The track's key.
+     * @return The path to the journal.
+     */
+    private Path getJournalPath(String key) {
+        return this.directory.resolve(key + ".journal");
+    }
+
+    private static void writeRecord(DataOutput out, PersonalBest pb) throws IOException {
+        UUID uuid = pb.player().ref().id();
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+        out.writeUTF(pb.player().offlineName());
+
+        LeaderboardStorage.writeVarInt(out, pb.splits().size());
+
+        long prevSplit = 0l;
+        for (long split : pb.splits()) {
+            LeaderboardStorage.writeVarLong(out, split - prevSplit);
+            prevSplit = split;
+        }
+
+        byte[] ghost = pb.ghost().getData();
+        LeaderboardStorage.writeVarInt(out, pb.ghost().getFrames());
+        LeaderboardStorage.writeVarInt(out, ghost.length);
+        out.write(ghost);
+    }
+
+    private static PersonalBest readRecord(DataInput in, boolean withGhost) throws IOException {
+        UUID uuid = new UUID(in.readLong(), in.readLong());
+        String name = in.readUTF();
+
+        int splitCount = LeaderboardStorage.readVarInt(in);
+        LongArrayList splits = new LongArrayList(splitCount);
+
+        long split = 0l;
+        for (int j = 0; j < splitCount; j++) {
+            split += LeaderboardStorage.readVarLong(in);
+            splits.add(split);
+        }
+
+        Ghost ghost = Ghost.EMPTY;
+        if (withGhost) {
+            int frames = LeaderboardStorage.readVarInt(in);
+            int size = LeaderboardStorage.readVarInt(in);
+            // a bad size leaves nothing to skip past, the rest of the shard can't be read
+            if (size < 0 || size > LeaderboardStorage.MAX_GHOST_SIZE) {
+                throw new IOException("Invalid ghost of " + size + " bytes");
+            }
+
+            byte[] data = new byte[size];
+            in.readFully(data);
+
+            if (Ghost.isValid(frames, data)) {
+                ghost = frames > 0 ? new Ghost(frames, data) : Ghost.EMPTY;
+            } else {
+                // the run still counts without its ghost
+                BoatRace.LOGGER.warn("Dropping a corrupt ghost from {}'s personal best", name);
+            }
+        }
+
+        return new PersonalBest(new BoatRacePlayer(PlayerRef.ofUnchecked(uuid), name), splits, ghost);
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("VarInt too long");
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        // zigzag so the rare negative delta stays small
+        long zigzag = (value << 1) ^ (value >> 63);
+
+        while ((zigzag & ~0x7Fl) != 0) {
+            out.writeByte((int) (zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+
+        out.writeByte((int) zigzag);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long zigzag = 0l;
+
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.readByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+
+        throw new IOException("VarLong too long");
+    }
+}
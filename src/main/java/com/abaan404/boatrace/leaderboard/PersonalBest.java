@@ -7,16 +7,35 @@ import com.mojang.serialization.Codec;
 import com.mojang.serialization.codecs.RecordCodecBuilder;
 
 /**
- * Stores the player's time and splits and their info.
+ * Stores the player's time and splits and their info, along with a ghost of the
+ * run if one was recorded.
  */
-public record PersonalBest(BoatRacePlayer player, List<Long> splits) {
+public record PersonalBest(BoatRacePlayer player, List<Long> splits, Ghost ghost) {
     public static final PersonalBest DEFAULT = new PersonalBest(BoatRacePlayer.DEFAULT, List.of());
 
     public static final Codec<PersonalBest> CODEC = RecordCodecBuilder.create(instance -> instance.group(
             BoatRacePlayer.CODEC.fieldOf("player").forGetter(PersonalBest::player),
-            Codec.LONG.listOf().fieldOf("splits").forGetter(PersonalBest::splits))
+            Codec.LONG.listOf().fieldOf("splits").forGetter(PersonalBest::splits),
+            Ghost.CODEC.optionalFieldOf("ghost", Ghost.EMPTY).forGetter(PersonalBest::ghost))
             .apply(instance, PersonalBest::new));
 
+    public PersonalBest(BoatRacePlayer player, List<Long> splits) {
+        this(player, splits, Ghost.EMPTY);
+    }
+
+    /**
+     * Get this personal best without its ghost.
+     *
+     * @return The personal best, or itself if it had no ghost.
+     */
+    public PersonalBest withoutGhost() {
+        if (!this.ghost().exists()) {
+            return this;
+        }
+
+        return new PersonalBest(this.player(), this.splits());
+    }
+
     public long timer() {
         if (this.splits().isEmpty()) {
             return Long.MAX_VALUE;
@@ -30,19 +49,19 @@ public record PersonalBest(BoatRacePlayer player, List<Long> splits) {
     }
 
     /**
-     * Compare the split at an index. The length of splits in both personal bests
-     * must match and the checkpoint index must be valid for this pb.
+     * Compare a split against this pb's split at the same checkpoint. The
+     * checkpoint index must be valid for this pb.
      *
-     * @param currentSplits The other personal best to compare against.
-     * @param checkpointIdx The checkpoint to compare.
-     * @return The delta between the split compared against the other.
+     * @param split         The split to compare.
+     * @param checkpointIdx The checkpoint the split was recorded at.
+     * @return The delta between the split compared against this pb.
      */
-    public long getCheckpointDelta(List<Long> currentSplits, int checkpointIdx) {
-        if (checkpointIdx < 0 || checkpointIdx > this.splits().size() || checkpointIdx > currentSplits.size()) {
+    public long getCheckpointDelta(long split, int checkpointIdx) {
+        if (checkpointIdx < 0 || checkpointIdx >= this.splits().size()) {
             throw new IndexOutOfBoundsException("Invalid checkpoint index for personal bests to compare against.");
         }
 
-        return currentSplits.get(checkpointIdx) - this.splits().get(checkpointIdx);
+        return split - this.splits().get(checkpointIdx);
     }
 
     /**
@@ -58,6 +77,10 @@ public record PersonalBest(BoatRacePlayer player, List<Long> splits) {
             throw new IllegalArgumentException("Personal bests do not have equal splits.");
         }
 
-        return this.getCheckpointDelta(other.splits(), checkpointIdx);
+        if (checkpointIdx < 0 || checkpointIdx >= other.splits().size()) {
+            throw new IndexOutOfBoundsException("Invalid checkpoint index for personal bests to compare against.");
+        }
+
+        return this.getCheckpointDelta(other.splits().get(checkpointIdx), checkpointIdx);
     }
 }
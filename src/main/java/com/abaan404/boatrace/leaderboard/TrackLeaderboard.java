@@ -0,0 +1,227 @@
+package com.abaan404.boatrace.leaderboard;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.abaan404.boatrace.BoatRacePlayer;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+/**
+ * A track's personal bests sorted by time and indexed by player. Positions are
+ * found with a binary search over the times instead of a scan. Only the owning
+ * {@link Leaderboard} modifies this, one entry at a time. Ghosts are only kept
+ * for the fastest runs.
+ */
+public final class TrackLeaderboard {
+    // runs slower than this many others drop their ghost
+    static final int GHOST_LIMIT = 100;
+
+    private final ObjectArrayList<PersonalBest> records;
+    private final List<PersonalBest> recordsView;
+    private final Map<BoatRacePlayer, PersonalBest> byPlayer;
+    private int revision = 0;
+
+    public TrackLeaderboard() {
+        this(List.of());
+    }
+
+    public TrackLeaderboard(List<PersonalBest> records) {
+        ObjectArrayList<PersonalBest> sorted = new ObjectArrayList<>(records.size());
+        Map<BoatRacePlayer, PersonalBest> byPlayer = new Object2ObjectOpenHashMap<>(records.size());
+
+        // keep the best time if a player somehow shows up more than once
+        for (PersonalBest pb : records) {
+            PersonalBest other = byPlayer.get(pb.player());
+
+            if (other == null || pb.timer() < other.timer()) {
+                byPlayer.put(pb.player(), pb);
+            }
+        }
+
+        for (PersonalBest pb : records) {
+            if (byPlayer.get(pb.player()) == pb) {
+                sorted.add(pb);
+            }
+        }
+
+        sorted.sort((a, b) -> Long.compare(a.timer(), b.timer()));
+
+        this.records = sorted;
+        this.recordsView = Collections.unmodifiableList(sorted);
+        this.byPlayer = byPlayer;
+
+        for (int i = GHOST_LIMIT; i < sorted.size(); i++) {
+            this.stripGhost(i);
+        }
+    }
+
+    /**
+     * Get the personal bests sorted by time. This is a live view.
+     *
+     * @return The personal bests.
+     */
+    public List<PersonalBest> getRecords() {
+        return this.recordsView;
+    }
+
+    /**
+     * Get a copy of the personal bests sorted by time.
+     *
+     * @return The personal bests.
+     */
+    public List<PersonalBest> copyRecords() {
+        return new ObjectArrayList<>(this.records);
+    }
+
+    /**
+     * Get the personal best for a player.
+     *
+     * @param player The player.
+     * @return Their personal best.
+     */
+    public PersonalBest getPersonalBest(BoatRacePlayer player) {
+        return this.byPlayer.getOrDefault(player, PersonalBest.DEFAULT);
+    }
+
+    /**
+     * Get the position for a player.
+     *
+     * @param player The player.
+     * @return Their position. -1 if not found.
+     */
+    public int getPosition(BoatRacePlayer player) {
+        PersonalBest pb = this.byPlayer.get(player);
+        if (pb == null) {
+            return -1;
+        }
+
+        // only runs with the exact same time need to be walked
+        for (int i = this.lowerBound(pb.timer()); i < this.records.size(); i++) {
+            if (this.records.get(i) == pb) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Get a counter that changes whenever a personal best is submitted or
+     * removed.
+     *
+     * @return The revision.
+     */
+    public int getRevision() {
+        return this.revision;
+    }
+
+    /**
+     * Get the number of personal bests.
+     *
+     * @return The number of personal bests.
+     */
+    public int size() {
+        return this.records.size();
+    }
+
+    /**
+     * Put a player's personal best in place, moving it if they already had one.
+     * The new personal best goes after anyone with the same time. The personal
+     * best stored may have lost its ghost, see {@link #getPersonalBest}.
+     *
+     * @param personalBest The personal best.
+     * @return The new position.
+     */
+    int submit(PersonalBest personalBest) {
+        int from = this.getPosition(personalBest.player());
+        if (from >= 0) {
+            this.records.remove(from);
+        }
+
+        int low = 0;
+        int high = this.records.size();
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (this.records.get(mid).timer() <= personalBest.timer()) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        PersonalBest stored = low < GHOST_LIMIT ? personalBest : personalBest.withoutGhost();
+        this.records.add(low, stored);
+        this.byPlayer.put(stored.player(), stored);
+        this.revision++;
+
+        // whoever got pushed out of the top keeps their time but not their ghost
+        if (low < GHOST_LIMIT && this.records.size() > GHOST_LIMIT) {
+            this.stripGhost(GHOST_LIMIT);
+        }
+
+        return low;
+    }
+
+    /**
+     * Remove a player's personal best in place.
+     *
+     * @param player The player.
+     * @return Their old position. -1 if they had no personal best.
+     */
+    int remove(BoatRacePlayer player) {
+        int position = this.getPosition(player);
+        if (position < 0) {
+            return -1;
+        }
+
+        this.records.remove(position);
+        this.byPlayer.remove(player);
+        this.revision++;
+
+        return position;
+    }
+
+    /**
+     * Drop the ghost of the personal best at a position.
+     *
+     * @param position The position.
+     */
+    private void stripGhost(int position) {
+        PersonalBest pb = this.records.get(position);
+        if (!pb.ghost().exists()) {
+            return;
+        }
+
+        PersonalBest stripped = pb.withoutGhost();
+        this.records.set(position, stripped);
+        this.byPlayer.put(stripped.player(), stripped);
+    }
+
+    /**
+     * Get the first position with a time not faster than the given time.
+     *
+     * @param timer The time.
+     * @return The position.
+     */
+    private int lowerBound(long timer) {
+        int low = 0;
+        int high = this.records.size();
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (this.records.get(mid).timer() < timer) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+}
@@ -1,6 +1,7 @@
 package com.abaan404.boatrace.mixin;
 
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
@@ -17,21 +18,39 @@ import xyz.nucleoid.stimuli.event.EventResult;
 
 @Mixin(AbstractBoatEntity.class)
 public abstract class AbstractBoatEntityMixin extends VehicleEntity {
+    @Unique
+    private int singleSeatRevision = -1;
+
+    @Unique
+    private boolean singleSeat = false;
+
     public AbstractBoatEntityMixin(EntityType<?> entityType, World world) {
         super(entityType, world);
     }
 
     @Inject(method = "getMaxPassengers", at = @At("HEAD"), cancellable = true)
     private void getMaxPassengers(CallbackInfoReturnable<Integer> cir) {
+        // only look the rule up again once a game's rules may have changed
+        int revision = BoatRaceGameRules.getRevision();
+        if (this.singleSeatRevision != revision) {
+            this.singleSeatRevision = revision;
+            this.singleSeat = this.testSingleSeat();
+        }
+
+        if (this.singleSeat) {
+            cir.setReturnValue(1);
+            cir.cancel();
+        }
+    }
+
+    @Unique
+    private boolean testSingleSeat() {
         GameSpace gameSpace = GameSpaceManagerImpl.get().byWorld(this.getWorld());
 
         if (gameSpace != null) {
-            EventResult singleSeat = gameSpace.getBehavior().testRule(BoatRaceGameRules.SINGLE_SEAT);
-
-            if (singleSeat == EventResult.ALLOW) {
-                cir.setReturnValue(1);
-                cir.cancel();
-            }
+            return gameSpace.getBehavior().testRule(BoatRaceGameRules.SINGLE_SEAT) == EventResult.ALLOW;
         }
+
+        return false;
     }
 }
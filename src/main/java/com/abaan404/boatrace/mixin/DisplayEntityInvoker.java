@@ -0,0 +1,12 @@
+package com.abaan404.boatrace.mixin;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Invoker;
+
+import net.minecraft.entity.decoration.DisplayEntity;
+
+@Mixin(DisplayEntity.class)
+public interface DisplayEntityInvoker {
+    @Invoker("setTeleportDuration")
+    void invokeSetTeleportDuration(int teleportDuration);
+}
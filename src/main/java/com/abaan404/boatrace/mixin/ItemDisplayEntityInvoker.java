@@ -0,0 +1,13 @@
+package com.abaan404.boatrace.mixin;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Invoker;
+
+import net.minecraft.entity.decoration.DisplayEntity;
+import net.minecraft.item.ItemStack;
+
+@Mixin(DisplayEntity.ItemDisplayEntity.class)
+public interface ItemDisplayEntityInvoker {
+    @Invoker("setItemStack")
+    void invokeSetItemStack(ItemStack stack);
+}
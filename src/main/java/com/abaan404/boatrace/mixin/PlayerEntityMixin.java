@@ -6,6 +6,7 @@ import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import com.abaan404.boatrace.events.PlayerDismountEvent;
+import com.abaan404.boatrace.gameplay.BoatPool;
 
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
@@ -31,6 +32,11 @@ public abstract class PlayerEntityMixin extends LivingEntity {
             return;
         }
 
+        // the boat is being put back into a pool, not left by the player
+        if (BoatPool.isReleasing(vehicle)) {
+            return;
+        }
+
         if (!this.getWorld().isClient()) {
             ServerPlayerEntity player = (ServerPlayerEntity) (Object) this;
 
@@ -0,0 +1,123 @@
+package com.abaan404.boatrace.utils;
+
+import java.util.Arrays;
+
+import com.abaan404.boatrace.BoatRaceConfig;
+
+import net.minecraft.network.packet.s2c.play.OverlayMessageS2CPacket;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.Text;
+
+/**
+ * Decides when a player's action bar should be refreshed and skips sending text
+ * the player is already seeing.
+ */
+public class ActionBarCache {
+    // the client fades the action bar out after a few seconds without a new one
+    private static final int KEEP_ALIVE = 40;
+
+    private final int interval;
+
+    private int ticks = 0;
+    private int[] lastRefresh = new int[0];
+    private int[] lastSent = new int[0];
+    private int[] positions = new int[0];
+    private int[] checkpoints = new int[0];
+    private Text[] texts = new Text[0];
+
+    public ActionBarCache(BoatRaceConfig.ActionBar config) {
+        this.interval = config.interval();
+    }
+
+    /**
+     * Advance the cache by a tick, call once before refreshing any player.
+     */
+    public void tick() {
+        this.ticks++;
+    }
+
+    /**
+     * Check if a player's action bar is due to be refreshed.
+     *
+     * @param id         The player's id.
+     * @param position   Their current position.
+     * @param checkpoint Their current checkpoint.
+     * @return If the action bar should be built and sent.
+     */
+    public boolean shouldRefresh(int id, int position, int checkpoint) {
+        this.ensureCapacity(id);
+
+        if (this.positions[id] != position || this.checkpoints[id] != checkpoint) {
+            return true;
+        }
+
+        return this.ticks - this.lastRefresh[id] >= this.interval;
+    }
+
+    /**
+     * Send a refreshed action bar, skipped if it's the same text the player is
+     * already seeing.
+     *
+     * @param player     The player.
+     * @param id         The player's id.
+     * @param position   Their current position.
+     * @param checkpoint Their current checkpoint.
+     * @param text       The action bar text.
+     */
+    public void send(ServerPlayerEntity player, int id, int position, int checkpoint, Text text) {
+        if (this.update(id, position, checkpoint, text)) {
+            player.networkHandler.sendPacket(new OverlayMessageS2CPacket(text));
+        }
+    }
+
+    /**
+     * Record a refreshed action bar without sending it, for callers that send
+     * the packet themselves.
+     *
+     * @param id         The player's id.
+     * @param position   Their current position.
+     * @param checkpoint Their current checkpoint.
+     * @param text       The action bar text.
+     * @return If the text should be sent, false if the player is already seeing
+     *         it.
+     */
+    public boolean update(int id, int position, int checkpoint, Text text) {
+        this.ensureCapacity(id);
+
+        this.lastRefresh[id] = this.ticks;
+        this.positions[id] = position;
+        this.checkpoints[id] = checkpoint;
+
+        if (text.equals(this.texts[id]) && this.ticks - this.lastSent[id] < ActionBarCache.KEEP_ALIVE) {
+            return false;
+        }
+
+        this.texts[id] = text;
+        this.lastSent[id] = this.ticks;
+        return true;
+    }
+
+    /**
+     * Grow the per player arrays to fit an id.
+     *
+     * @param id The player's id.
+     */
+    private void ensureCapacity(int id) {
+        if (id < this.positions.length) {
+            return;
+        }
+
+        int oldCapacity = this.positions.length;
+        int capacity = Math.max(id + 1, oldCapacity * 2);
+
+        this.lastRefresh = Arrays.copyOf(this.lastRefresh, capacity);
+        this.lastSent = Arrays.copyOf(this.lastSent, capacity);
+        this.positions = Arrays.copyOf(this.positions, capacity);
+        this.checkpoints = Arrays.copyOf(this.checkpoints, capacity);
+        this.texts = Arrays.copyOf(this.texts, capacity);
+
+        // new players are always refreshed straight away
+        Arrays.fill(this.positions, oldCapacity, capacity, Integer.MIN_VALUE);
+        Arrays.fill(this.checkpoints, oldCapacity, capacity, Integer.MIN_VALUE);
+    }
+}
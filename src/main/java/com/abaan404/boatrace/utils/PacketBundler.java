@@ -0,0 +1,93 @@
+package com.abaan404.boatrace.utils;
+
+import java.util.List;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.network.listener.ClientPlayPacketListener;
+import net.minecraft.network.packet.Packet;
+import net.minecraft.network.packet.s2c.play.BundleS2CPacket;
+import net.minecraft.network.packet.s2c.play.PlaySoundS2CPacket;
+import net.minecraft.registry.Registries;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.sound.SoundCategory;
+import net.minecraft.sound.SoundEvent;
+
+/**
+ * Collects every packet a tick sends to a player and sends them together once
+ * the tick is done, bundled into one packet when there is more than one.
+ */
+public class PacketBundler {
+    private final Reference2ObjectMap<ServerPlayerEntity, List<Packet<? super ClientPlayPacketListener>>> queued = new Reference2ObjectOpenHashMap<>();
+
+    /**
+     * Queue a packet for a player.
+     *
+     * @param player The player.
+     * @param packet The packet.
+     */
+    public void send(ServerPlayerEntity player, Packet<? super ClientPlayPacketListener> packet) {
+        List<Packet<? super ClientPlayPacketListener>> packets = this.queued.get(player);
+
+        if (packets == null) {
+            packets = new ObjectArrayList<>();
+            this.queued.put(player, packets);
+        }
+
+        packets.add(packet);
+    }
+
+    /**
+     * Queue a sound only this player hears, same as
+     * {@link ServerPlayerEntity#playSoundToPlayer}.
+     *
+     * @param player   The player.
+     * @param sound    The sound.
+     * @param category The sound's category.
+     * @param volume   The volume.
+     * @param pitch    The pitch.
+     */
+    public void playSound(ServerPlayerEntity player, SoundEvent sound, SoundCategory category, float volume,
+            float pitch) {
+        this.send(player, new PlaySoundS2CPacket(Registries.SOUND_EVENT.getEntry(sound), category,
+                player.getX(), player.getY(), player.getZ(), volume, pitch, player.getRandom().nextLong()));
+    }
+
+    /**
+     * Drop everything queued for a player, for when they leave before the tick is
+     * flushed.
+     *
+     * @param player The player.
+     */
+    public void discard(ServerPlayerEntity player) {
+        this.queued.remove(player);
+    }
+
+    /**
+     * Send everything queued this tick.
+     */
+    public void flush() {
+        for (ObjectIterator<ServerPlayerEntity> it = this.queued.keySet().iterator(); it.hasNext();) {
+            ServerPlayerEntity player = it.next();
+            List<Packet<? super ClientPlayPacketListener>> packets = this.queued.get(player);
+
+            // forget players that had nothing sent to them this tick
+            if (packets.isEmpty()) {
+                it.remove();
+                continue;
+            }
+
+            if (!player.isDisconnected()) {
+                if (packets.size() == 1) {
+                    player.networkHandler.sendPacket(packets.getFirst());
+                } else {
+                    player.networkHandler.sendPacket(new BundleS2CPacket(List.copyOf(packets)));
+                }
+            }
+
+            packets.clear();
+        }
+    }
+}
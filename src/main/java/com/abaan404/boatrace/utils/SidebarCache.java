@@ -0,0 +1,82 @@
+package com.abaan404.boatrace.utils;
+
+import java.util.List;
+
+import net.minecraft.text.Text;
+import xyz.nucleoid.plasmid.api.game.common.widget.SidebarWidget;
+
+/**
+ * Remembers what a sidebar was last built from and what it last showed, so it
+ * is only rebuilt when its inputs change and only resent when its lines do.
+ */
+public class SidebarCache {
+    private final SidebarWidget sidebar;
+
+    private long input1 = 0l;
+    private long input2 = 0l;
+    private long input3 = 0l;
+    private long input4 = 0l;
+    private long input5 = 0l;
+    private List<Text> lines = List.of();
+    private boolean built = false;
+
+    public SidebarCache(SidebarWidget sidebar) {
+        this.sidebar = sidebar;
+    }
+
+    /**
+     * Check if the sidebar's input changed since the last call and remember the
+     * new input.
+     *
+     * @param input What the sidebar's lines are built from.
+     * @return If the lines need to be built again.
+     */
+    public boolean hasChanged(long input) {
+        return this.hasChanged(input, 0l, 0l, 0l, 0l);
+    }
+
+    /**
+     * Check if the sidebar's inputs changed since the last call and remember the
+     * new inputs. Unused inputs should be left as zero.
+     *
+     * @param input1 The first input the sidebar's lines are built from.
+     * @param input2 The second input.
+     * @param input3 The third input.
+     * @param input4 The fourth input.
+     * @param input5 The fifth input.
+     * @return If the lines need to be built again.
+     */
+    public boolean hasChanged(long input1, long input2, long input3, long input4, long input5) {
+        if (this.built
+                && this.input1 == input1
+                && this.input2 == input2
+                && this.input3 == input3
+                && this.input4 == input4
+                && this.input5 == input5) {
+            return false;
+        }
+
+        this.input1 = input1;
+        this.input2 = input2;
+        this.input3 = input3;
+        this.input4 = input4;
+        this.input5 = input5;
+        this.built = true;
+        return true;
+    }
+
+    /**
+     * Show these lines, the sidebar is left untouched if every line is the same
+     * as the ones already shown.
+     *
+     * @param lines The lines.
+     */
+    public void set(List<Text> lines) {
+        if (lines.equals(this.lines)) {
+            return;
+        }
+
+        this.lines = lines;
+        this.sidebar.set(content -> lines.forEach(content::add));
+    }
+}
@@ -1,7 +1,6 @@
 package com.abaan404.boatrace.utils;
 
 import java.net.URI;
-import java.util.EnumSet;
 import java.util.List;
 
 import org.jetbrains.annotations.Nullable;
@@ -9,6 +8,7 @@ import org.jetbrains.annotations.Nullable;
 import com.abaan404.boatrace.BoatRacePlayer;
 import com.abaan404.boatrace.BoatRaceTrack;
 import com.abaan404.boatrace.game.race.RaceWidgets;
+import com.abaan404.boatrace.gameplay.GhostPlayback;
 import com.abaan404.boatrace.leaderboard.PersonalBest;
 
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
@@ -105,8 +105,8 @@ public final class TextUtils {
     public static Text actionBarDelta(long delta) {
         String deltaString = TimeUtils.formatTime(
                 delta,
-                EnumSet.of(TimeUtils.Selector.SECONDS, TimeUtils.Selector.MILLISECONDS),
-                EnumSet.allOf(TimeUtils.Selector.class));
+                TimeUtils.SECONDS_AND_MILLISECONDS,
+                TimeUtils.ALL);
 
         // faster
         if (delta < 0) {
@@ -219,13 +219,13 @@ public final class TextUtils {
                 .append(Text.literal(" Duration: ").formatted(Formatting.RED))
                 .append(Text.literal(TimeUtils.formatTime(
                         Math.min(duration, maxDuration),
-                        EnumSet.complementOf(EnumSet.of(TimeUtils.Selector.HOURS)),
-                        EnumSet.complementOf(EnumSet.of(TimeUtils.Selector.MILLISECONDS)))))
+                        TimeUtils.NO_HOURS,
+                        TimeUtils.NO_MILLISECONDS)))
                 .append(Text.literal(" / ").formatted(Formatting.ITALIC))
                 .append(Text.literal(TimeUtils.formatTime(
                         maxDuration,
-                        EnumSet.complementOf(EnumSet.of(TimeUtils.Selector.HOURS)),
-                        EnumSet.complementOf(EnumSet.of(TimeUtils.Selector.MILLISECONDS)))));
+                        TimeUtils.NO_HOURS,
+                        TimeUtils.NO_MILLISECONDS)));
     }
 
     /**
@@ -315,8 +315,8 @@ public final class TextUtils {
     public static Text scoreboardRelative(long delta) {
         MutableText timeText = Text.literal(TimeUtils.formatTime(
                 delta,
-                EnumSet.of(TimeUtils.Selector.SECONDS, TimeUtils.Selector.MILLISECONDS),
-                EnumSet.allOf(TimeUtils.Selector.class)));
+                TimeUtils.SECONDS_AND_MILLISECONDS,
+                TimeUtils.ALL));
 
         if (delta > 0) {
             return Text.literal("+").append(timeText).formatted(Formatting.RED);
@@ -505,6 +505,18 @@ public final class TextUtils {
                 .append(Text.literal(leaderboardType.toString()).formatted(Formatting.ITALIC));
     }
 
+    /**
+     * A text to show which ghost is played back.
+     *
+     * @param mode The ghost mode.
+     * @return A text with the formatted message.
+     */
+    public static Text chatGhostMode(GhostPlayback.Mode mode) {
+        return Text.empty()
+                .append(Text.literal(" >> ").formatted(Formatting.RED, Formatting.BOLD))
+                .append(Text.literal(mode.toString()).formatted(Formatting.ITALIC));
+    }
+
     /**
      * A text to show winning points.
      *
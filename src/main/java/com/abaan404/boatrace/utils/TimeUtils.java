@@ -1,12 +1,38 @@
 package com.abaan404.boatrace.utils;
 
-import java.time.Duration;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.Set;
 
 public final class TimeUtils {
     private TimeUtils() {
     }
 
+    public static final Set<Selector> ALL = Collections.unmodifiableSet(EnumSet.allOf(Selector.class));
+    public static final Set<Selector> NO_HOURS = Collections.unmodifiableSet(
+            EnumSet.complementOf(EnumSet.of(Selector.HOURS)));
+    public static final Set<Selector> NO_MILLISECONDS = Collections.unmodifiableSet(
+            EnumSet.complementOf(EnumSet.of(Selector.MILLISECONDS)));
+    public static final Set<Selector> SECONDS_AND_MILLISECONDS = Collections.unmodifiableSet(
+            EnumSet.of(Selector.SECONDS, Selector.MILLISECONDS));
+
+    private static final long MILLIS_PER_SECOND = 1000l;
+    private static final long MILLIS_PER_MINUTE = 60l * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60l * MILLIS_PER_MINUTE;
+
+    private static final char[] DIGIT_TENS = new char[100];
+    private static final char[] DIGIT_ONES = new char[100];
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            DIGIT_TENS[i] = (char) ('0' + i / 10);
+            DIGIT_ONES[i] = (char) ('0' + i % 10);
+        }
+    }
+
+    // formatting runs on the server thread many times a tick, reuse the buffer
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(16));
+
     /**
      * Format the time into a string with chosen selectors to control formatting.
      * Hours will be omitted if its zero.
@@ -16,15 +42,45 @@ public final class TimeUtils {
      * @param include  include this time component.
      * @return The formatted time.
      */
-    public static String formatTime(long time, EnumSet<Selector> showZero, EnumSet<Selector> include) {
-        Duration duration = Duration.ofMillis(Math.abs(time));
+    public static String formatTime(long time, Set<Selector> showZero, Set<Selector> include) {
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
 
-        long hours = duration.toHours();
-        long minutes = duration.toMinutesPart();
-        long seconds = duration.toSecondsPart();
-        long millis = duration.toMillisPart();
+        return TimeUtils.appendTime(sb, time, showZero, include).toString();
+    }
 
-        StringBuilder sb = new StringBuilder();
+    /**
+     * Format the time into a string with default formatting (MM:SS:MS with optional
+     * HH).
+     *
+     * @param time The time in ms
+     * @return The formatted time.
+     */
+    public static String formatTime(long time) {
+        return TimeUtils.formatTime(time, NO_HOURS, ALL);
+    }
+
+    /**
+     * Format the time onto the end of a builder with chosen selectors to control
+     * formatting. Hours will be omitted if its zero.
+     *
+     * @param sb       The builder to append to.
+     * @param time     The time in ms.
+     * @param showZero Show the time component even if zero.
+     * @param include  include this time component.
+     * @return The builder.
+     */
+    public static StringBuilder appendTime(StringBuilder sb, long time, Set<Selector> showZero,
+            Set<Selector> include) {
+        // Long.MIN_VALUE has no positive counterpart
+        long abs = time == Long.MIN_VALUE ? Long.MAX_VALUE : Math.abs(time);
+
+        long hours = abs / MILLIS_PER_HOUR;
+        int minutes = (int) (abs / MILLIS_PER_MINUTE % 60);
+        int seconds = (int) (abs / MILLIS_PER_SECOND % 60);
+        int millis = (int) (abs % MILLIS_PER_SECOND);
+
+        int start = sb.length();
 
         boolean showHours = include.contains(Selector.HOURS)
                 && (hours > 0 || showZero.contains(Selector.HOURS));
@@ -39,39 +95,39 @@ public final class TimeUtils {
         }
 
         if (showMinutes) {
-            if (sb.length() > 0)
-                sb.append(":");
-            sb.append(String.format("%02d", minutes));
+            if (sb.length() > start)
+                sb.append(':');
+            TimeUtils.appendTwoDigits(sb, minutes);
         }
 
         if (showSeconds) {
-            if (sb.length() > 0)
-                sb.append(":");
-            sb.append(String.format("%02d", seconds));
+            if (sb.length() > start)
+                sb.append(':');
+            TimeUtils.appendTwoDigits(sb, seconds);
         }
 
         if (showMillis) {
-            if (sb.length() > 0)
-                sb.append(".");
-            sb.append(String.format("%03d", millis));
+            if (sb.length() > start)
+                sb.append('.');
+            sb.append((char) ('0' + millis / 100));
+            TimeUtils.appendTwoDigits(sb, millis % 100);
         }
 
-        if (sb.length() == 0) {
-            sb.append("0");
+        if (sb.length() == start) {
+            sb.append('0');
         }
 
-        return sb.toString();
+        return sb;
     }
 
     /**
-     * Format the time into a string with default formatting (MM:SS:MS with optional
-     * HH).
+     * Append a zero padded number below 100.
      *
-     * @param time The time in ms
-     * @return The formatted time.
+     * @param sb    The builder to append to.
+     * @param value The number.
      */
-    public static String formatTime(long time) {
-        return TimeUtils.formatTime(time, EnumSet.complementOf(EnumSet.of(Selector.HOURS)), EnumSet.allOf(Selector.class));
+    private static void appendTwoDigits(StringBuilder sb, int value) {
+        sb.append(DIGIT_TENS[value]).append(DIGIT_ONES[value]);
     }
 
     public enum Selector {
@@ -0,0 +1,68 @@
+package com.abaan404.boatrace.gameplay;
+
+import java.util.BitSet;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntList;
+
+/**
+ * Positions kept the way they were before an update moved only the updated
+ * player, every update sorts all the ranked players again.
+ */
+final class FullSortPositions {
+    private final Splits splits;
+
+    private final IntArrayList positions = new IntArrayList();
+    private final BitSet waiting = new BitSet();
+
+    FullSortPositions(Splits splits) {
+        this.splits = splits;
+    }
+
+    void update(int id, long split) {
+        this.waiting.clear(id);
+        this.splits.recordSplit(id, split);
+
+        // move players who had update() called for ahead of those who hadn't.
+        int[] elements = this.positions.elements();
+        int updated = 0;
+
+        for (int i = 0; i < this.positions.size(); i++) {
+            int player = elements[i];
+            if (!this.waiting.get(player)) {
+                System.arraycopy(elements, updated, elements, updated + 1, i - updated);
+                elements[updated++] = player;
+            }
+        }
+
+        // sort them by checkpoints completed or their delta
+        IntArrays.mergeSort(elements, 0, updated, (a, b) -> {
+            int aCount = this.splits.getSplitCount(a);
+            int bCount = this.splits.getSplitCount(b);
+
+            if (aCount != bCount) {
+                return Integer.compare(bCount, aCount);
+            }
+
+            long aTime = aCount == 0 ? Long.MAX_VALUE : this.splits.getLastSplit(a);
+            long bTime = bCount == 0 ? Long.MAX_VALUE : this.splits.getLastSplit(b);
+
+            return Long.compare(aTime, bTime);
+        });
+    }
+
+    void add(int id) {
+        this.positions.add(id);
+        this.waiting.set(id);
+    }
+
+    void remove(int id) {
+        this.positions.rem(id);
+        this.waiting.clear(id);
+    }
+
+    IntList getPositions() {
+        return this.positions;
+    }
+}
@@ -0,0 +1,95 @@
+package com.abaan404.boatrace.gameplay;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Times moving only the updated player against sorting every player again.
+ * Not part of the tests, run with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class PositionsBenchmark {
+    private static final int SPLIT_CAPACITY = 8;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final int LAPS = 50;
+
+    @Test
+    void incrementalAgainstFullSort() {
+        for (int players : new int[] { 8, 32, 128, 512 }) {
+            int[] order = PositionsBenchmark.crossings(players);
+            long[] splits = PositionsBenchmark.splits(order, players);
+
+            long incremental = Long.MAX_VALUE;
+            long fullSort = Long.MAX_VALUE;
+            long sink = 0l;
+
+            for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+                long start = System.nanoTime();
+                Positions positions = new Positions(new Splits(SPLIT_CAPACITY));
+                for (int id = 0; id < players; id++) {
+                    positions.add(id);
+                }
+                for (int i = 0; i < order.length; i++) {
+                    positions.update(order[i], splits[i]);
+                }
+                sink += positions.getPositions().getInt(0);
+                long incrementalTime = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                FullSortPositions expected = new FullSortPositions(new Splits(SPLIT_CAPACITY));
+                for (int id = 0; id < players; id++) {
+                    expected.add(id);
+                }
+                for (int i = 0; i < order.length; i++) {
+                    expected.update(order[i], splits[i]);
+                }
+                sink += expected.getPositions().getInt(0);
+                long fullSortTime = System.nanoTime() - start;
+
+                if (round >= WARMUP_ROUNDS) {
+                    incremental = Math.min(incremental, incrementalTime);
+                    fullSort = Math.min(fullSort, fullSortTime);
+                }
+            }
+
+            System.out.printf("%d players: incremental %.1f ns/update, full sort %.1f ns/update (%d)%n",
+                    players, (double) incremental / order.length, (double) fullSort / order.length, sink);
+        }
+    }
+
+    /**
+     * Get the order players cross checkpoints in, mostly keeping their places
+     * with the odd overtake.
+     */
+    private static int[] crossings(int players) {
+        Random random = new Random(players);
+        int[] grid = new int[players];
+        for (int id = 0; id < players; id++) {
+            grid[id] = id;
+        }
+
+        int[] order = new int[players * SPLIT_CAPACITY * LAPS];
+        for (int i = 0; i < order.length; i += players) {
+            int swap = random.nextInt(players - 1);
+            int id = grid[swap];
+            grid[swap] = grid[swap + 1];
+            grid[swap + 1] = id;
+
+            System.arraycopy(grid, 0, order, i, players);
+        }
+
+        return order;
+    }
+
+    private static long[] splits(int[] order, int players) {
+        long[] splits = new long[order.length];
+        for (int i = 0; i < order.length; i++) {
+            splits[i] = (i / players) * 5000l + (i % players) * 50l;
+        }
+
+        return splits;
+    }
+}
@@ -0,0 +1,91 @@
+package com.abaan404.boatrace.gameplay;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import it.unimi.dsi.fastutil.ints.IntList;
+
+class PositionsTest {
+    private static final int SPLIT_CAPACITY = 4;
+
+    @Test
+    void ranksByCheckpointsThenTime() {
+        Positions positions = new Positions(new Splits(SPLIT_CAPACITY));
+        positions.add(0);
+        positions.add(1);
+        positions.add(2);
+
+        positions.update(2, 1000l);
+        assertEquals(IntList.of(2, 0, 1), positions.getPositions());
+
+        positions.update(0, 900l);
+        assertEquals(IntList.of(0, 2, 1), positions.getPositions());
+
+        positions.update(1, 1100l);
+        positions.update(1, 2000l);
+        assertEquals(IntList.of(1, 0, 2), positions.getPositions());
+    }
+
+    @Test
+    void tiedPlayersKeepTheirOrder() {
+        Positions positions = new Positions(new Splits(SPLIT_CAPACITY));
+        positions.add(0);
+        positions.add(1);
+        positions.add(2);
+
+        // crossing on the same split puts a player behind whoever got there first
+        positions.update(1, 1000l);
+        positions.update(2, 1000l);
+        positions.update(0, 1000l);
+        assertEquals(IntList.of(1, 2, 0), positions.getPositions());
+
+        // catching up from behind onto a tie keeps them behind
+        positions.update(0, 2000l);
+        positions.update(2, 2000l);
+        assertEquals(IntList.of(0, 2, 1), positions.getPositions());
+
+        positions.update(1, 2000l);
+        assertEquals(IntList.of(0, 2, 1), positions.getPositions());
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, positions.getPosition(positions.getPositions().getInt(i)));
+        }
+    }
+
+    @Test
+    void matchesFullSort() {
+        Random random = new Random(0l);
+
+        for (int run = 0; run < 100; run++) {
+            Positions positions = new Positions(new Splits(SPLIT_CAPACITY));
+            FullSortPositions expected = new FullSortPositions(new Splits(SPLIT_CAPACITY));
+            int players = 1 + random.nextInt(16);
+
+            for (int id = 0; id < players; id++) {
+                positions.add(id);
+                expected.add(id);
+            }
+
+            for (int step = 0; step < 200; step++) {
+                int id = random.nextInt(players);
+
+                if (random.nextInt(20) == 0) {
+                    positions.remove(id);
+                    expected.remove(id);
+                    positions.add(id);
+                    expected.add(id);
+                } else if (positions.getPosition(id) >= 0) {
+                    // few distinct times so plenty of players tie
+                    long split = (step / players) * 1000l + random.nextInt(3) * 100l;
+                    positions.update(id, split);
+                    expected.update(id, split);
+                }
+
+                assertEquals(expected.getPositions(), positions.getPositions(), "run " + run + ", step " + step);
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.abaan404.boatrace.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.abaan404.boatrace.utils.TimeUtils.Selector;
+
+class TimeUtilsTest {
+    private static final long SECOND = 1000l;
+    private static final long MINUTE = 60l * SECOND;
+    private static final long HOUR = 60l * MINUTE;
+
+    // zero, every place a unit rolls over into the next and the largest times
+    private static final long[] TIMES = {
+            0l, 1l, 9l, 10l, 99l, 100l, 999l,
+            SECOND, SECOND + 1l, 10l * SECOND - 1l, 10l * SECOND, MINUTE - 1l,
+            MINUTE, MINUTE + 1l, 10l * MINUTE - 1l, 10l * MINUTE, HOUR - 1l,
+            HOUR, HOUR + 1l, 10l * HOUR - 1l, 10l * HOUR, 100l * HOUR - 1l, 100l * HOUR,
+            Long.MAX_VALUE - 1l, Long.MAX_VALUE,
+    };
+
+    @Test
+    void matchesDurationFormatting() {
+        List<Set<Selector>> subsets = TimeUtilsTest.subsets();
+
+        for (long time : TIMES) {
+            for (Set<Selector> showZero : subsets) {
+                for (Set<Selector> include : subsets) {
+                    TimeUtilsTest.assertFormat(time, showZero, include);
+                    TimeUtilsTest.assertFormat(-time, showZero, include);
+                }
+            }
+        }
+    }
+
+    @Test
+    void formatsMinValueAsMaxValue() {
+        // the old formatter printed negative parts here, there is no positive
+        // counterpart so the largest time is the closest
+        for (Set<Selector> showZero : TimeUtilsTest.subsets()) {
+            for (Set<Selector> include : TimeUtilsTest.subsets()) {
+                assertEquals(
+                        TimeUtilsTest.formatDuration(Long.MAX_VALUE, showZero, include),
+                        TimeUtils.formatTime(Long.MIN_VALUE, showZero, include));
+            }
+        }
+    }
+
+    @Test
+    void formatsWithDefaults() {
+        assertEquals("00:00.000", TimeUtils.formatTime(0l));
+        assertEquals("01:01.001", TimeUtils.formatTime(MINUTE + SECOND + 1l));
+        assertEquals("1:00:00.000", TimeUtils.formatTime(HOUR));
+        assertEquals(TimeUtilsTest.formatDuration(-(HOUR - 1l), TimeUtils.NO_HOURS, TimeUtils.ALL),
+                TimeUtils.formatTime(-(HOUR - 1l)));
+    }
+
+    @Test
+    void appendsAfterExistingText() {
+        StringBuilder sb = new StringBuilder("Lap ");
+
+        TimeUtils.appendTime(sb, 0l, EnumSet.noneOf(Selector.class), EnumSet.noneOf(Selector.class));
+        sb.append(", ");
+        TimeUtils.appendTime(sb, HOUR + 1l, TimeUtils.NO_HOURS, TimeUtils.ALL);
+
+        assertEquals("Lap 0, 1:00:00.001", sb.toString());
+    }
+
+    private static void assertFormat(long time, Set<Selector> showZero, Set<Selector> include) {
+        assertEquals(
+                TimeUtilsTest.formatDuration(time, showZero, include),
+                TimeUtils.formatTime(time, showZero, include),
+                () -> "time " + time + ", showing zero " + showZero + ", including " + include);
+    }
+
+    private static List<Set<Selector>> subsets() {
+        Selector[] selectors = Selector.values();
+        List<Set<Selector>> subsets = new ArrayList<>(1 << selectors.length);
+
+        for (int mask = 0; mask < 1 << selectors.length; mask++) {
+            EnumSet<Selector> subset = EnumSet.noneOf(Selector.class);
+
+            for (Selector selector : selectors) {
+                if ((mask & (1 << selector.ordinal())) != 0) {
+                    subset.add(selector);
+                }
+            }
+
+            subsets.add(subset);
+        }
+
+        return subsets;
+    }
+
+    /**
+     * The formatter before it stopped going through {@link Duration}, kept to
+     * compare against.
+     */
+    private static String formatDuration(long time, Set<Selector> showZero, Set<Selector> include) {
+        Duration duration = Duration.ofMillis(Math.abs(time));
+
+        long hours = duration.toHours();
+        long minutes = duration.toMinutesPart();
+        long seconds = duration.toSecondsPart();
+        long millis = duration.toMillisPart();
+
+        StringBuilder sb = new StringBuilder();
+
+        boolean showHours = include.contains(Selector.HOURS)
+                && (hours > 0 || showZero.contains(Selector.HOURS));
+        boolean showMinutes = include.contains(Selector.MINUTES)
+                && (minutes > 0 || showZero.contains(Selector.MINUTES) || showHours);
+        boolean showSeconds = include.contains(Selector.SECONDS)
+                && (seconds > 0 || showZero.contains(Selector.SECONDS) || showMinutes);
+        boolean showMillis = include.contains(Selector.MILLISECONDS);
+
+        if (showHours) {
+            sb.append(hours);
+        }
+
+        if (showMinutes) {
+            if (sb.length() > 0)
+                sb.append(":");
+            sb.append(String.format("%02d", minutes));
+        }
+
+        if (showSeconds) {
+            if (sb.length() > 0)
+                sb.append(":");
+            sb.append(String.format("%02d", seconds));
+        }
+
+        if (showMillis) {
+            if (sb.length() > 0)
+                sb.append(".");
+            sb.append(String.format("%03d", millis));
+        }
+
+        if (sb.length() == 0) {
+            sb.append("0");
+        }
+
+        return sb.toString();
+    }
+}